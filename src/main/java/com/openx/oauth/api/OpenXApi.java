@@ -11,7 +11,9 @@
  *======================================================================*/
 package com.openx.oauth.api;
 
+import com.openx.oauth.extractors.BaseStringExtractorOpenXImpl;
 import com.openx.oauth.extractors.HeaderExtractorOpenXImpl;
+import com.openx.oauth.service.HMACSha1SignatureServiceOpenXImpl;
 import com.openx.oauth.service.OpenXServiceImpl;
 import org.scribe.builder.api.Api;
 import org.scribe.extractors.*;
@@ -25,6 +27,12 @@ import org.scribe.services.*;
  */
 public class OpenXApi implements Api {
 
+    private static final SignatureService SIGNATURE_SERVICE =
+            new HMACSha1SignatureServiceOpenXImpl();
+    private static final BaseStringExtractor BASE_STRING_EXTRACTOR =
+            new BaseStringExtractorOpenXImpl();
+    private static final HeaderExtractor HEADER_EXTRACTOR = new HeaderExtractorOpenXImpl();
+
     private String requestTokenUrl;
     private String accessTokenUrl;
     private String authorizeUrl;
@@ -68,21 +76,21 @@ public class OpenXApi implements Api {
     }
 
     /**
-     * Returns the base string extractor.
+     * Returns the base string extractor. The extractor is shared.
      *
      * @return BaseStringExtractor string extractor
      */
     public BaseStringExtractor getBaseStringExtractor() {
-        return new BaseStringExtractorImpl();
+        return BASE_STRING_EXTRACTOR;
     }
 
     /**
-     * Returns the header extractor.
+     * Returns the header extractor. The extractor is shared.
      *
      * @return HeaderExtractor extractor
      */
     public HeaderExtractor getHeaderExtractor() {
-        return new HeaderExtractorOpenXImpl();
+        return HEADER_EXTRACTOR;
     }
 
     /**
@@ -95,12 +103,13 @@ public class OpenXApi implements Api {
     }
 
     /**
-     * Returns the signature service.
+     * Returns the signature service. The service is shared and keeps its
+     * Macs initialized between calls.
      *
      * @return SignatureService service
      */
     public SignatureService getSignatureService() {
-        return new HMACSha1SignatureService();
+        return SIGNATURE_SERVICE;
     }
 
     /**
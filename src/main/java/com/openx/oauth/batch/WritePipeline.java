@@ -0,0 +1,309 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.batch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.openx.oauth.client.Helper;
+
+/**
+ * Pipelines object creation through {@link Helper#postAPICallAsync}.
+ *
+ * Producers put JSON objects into a bounded queue and get a future per
+ * object. A dispatcher thread takes them off the queue and keeps up to
+ * maxInFlight POSTs running. Once all POSTs are in flight the queue fills
+ * up and {@link #submit(String)} blocks, which slows producers down to the
+ * speed of the API.
+ *
+ * If the API offers a bulk endpoint for the entity, {@link #bulk} makes the
+ * pipeline post batches as a JSON array instead; the endpoint must answer
+ * with an array holding one result per posted object, in order.
+ */
+public class WritePipeline implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(WritePipeline.class.getName());
+
+    private final Helper helper;
+    private final String domain;
+    private final String path;
+    private final int maxInFlight;
+    private final BlockingQueue<Item> queue;
+    private final Semaphore inFlight;
+    private final Thread dispatcher;
+    private final AtomicLong postCount = new AtomicLong();
+    private volatile boolean closed;
+    private String bulkPath;
+    private int maxBatchSize = 1;
+    private long lingerMillis;
+
+    /**
+     * Object Constructor
+     * @param helper logged in helper used for the POSTs
+     * @param domain
+     * @param path path objects are posted to, e.g. /ox/4.0/creative
+     * @param queueCapacity objects that may wait before producers block
+     * @param maxInFlight concurrent POSTs
+     */
+    public WritePipeline(Helper helper, String domain, String path, int queueCapacity,
+            int maxInFlight) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity must be positive");
+        }
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        this.helper = helper;
+        this.domain = domain;
+        this.path = path;
+        this.maxInFlight = maxInFlight;
+        this.queue = new ArrayBlockingQueue<Item>(queueCapacity);
+        this.inFlight = new Semaphore(maxInFlight);
+        this.dispatcher = new Thread(this::dispatch, "openx-write-pipeline");
+        this.dispatcher.setDaemon(true);
+    }
+
+    /**
+     * Posts batches to a bulk endpoint instead of one object per POST.
+     * Must be called before the first submit.
+     * @param bulkPath path of the bulk endpoint
+     * @param maxBatchSize objects per POST
+     * @param linger how long to wait for a batch to fill up
+     * @param unit
+     * @return this pipeline for method chaining
+     */
+    public synchronized WritePipeline bulk(String bulkPath, int maxBatchSize, long linger,
+            TimeUnit unit) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        if (dispatcher.isAlive()) {
+            throw new IllegalStateException("pipeline already started");
+        }
+        this.bulkPath = bulkPath;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerMillis = unit.toMillis(linger);
+        return this;
+    }
+
+    /**
+     * Queues an object, blocking while the queue is full
+     * @param jsonString the object
+     * @return future completed with the API's answer for this object
+     * @throws InterruptedException
+     */
+    public CompletableFuture<String> submit(String jsonString) throws InterruptedException {
+        Item item = new Item(jsonString);
+        start();
+        queue.put(item);
+        checkNotClosed(item);
+        return item.result;
+    }
+
+    /**
+     * Queues an object, waiting at most the given time for room in the queue
+     * @param jsonString the object
+     * @param timeout
+     * @param unit
+     * @return future completed with the API's answer, or null if the queue
+     * stayed full
+     * @throws InterruptedException
+     */
+    public CompletableFuture<String> submit(String jsonString, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        Item item = new Item(jsonString);
+        start();
+        if (!queue.offer(item, timeout, unit)) {
+            return null;
+        }
+        checkNotClosed(item);
+        return item.result;
+    }
+
+    /**
+     * @return objects waiting in the queue
+     */
+    public int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * @return POSTs sent so far
+     */
+    public long getPostCount() {
+        return postCount.get();
+    }
+
+    /**
+     * Stops accepting objects and waits until every queued object is posted
+     * and answered
+     * @throws IOException if interrupted while waiting
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+        }
+        try {
+            if (dispatcher.isAlive()) {
+                dispatcher.join();
+            }
+            inFlight.acquire(maxInFlight);
+            inFlight.release(maxInFlight);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while draining");
+        }
+    }
+
+    private synchronized void start() {
+        if (closed) {
+            throw new IllegalStateException("pipeline closed");
+        }
+        if (!dispatcher.isAlive()) {
+            dispatcher.start();
+        }
+    }
+
+    /**
+     * Takes an object back that was queued while the pipeline was closing
+     */
+    private void checkNotClosed(Item item) {
+        if (closed && queue.remove(item)) {
+            throw new IllegalStateException("pipeline closed");
+        }
+    }
+
+    private void dispatch() {
+        try {
+            while (true) {
+                Item first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed && queue.isEmpty()) {
+                        return;
+                    }
+                    continue;
+                }
+                List<Item> batch = new ArrayList<Item>(maxBatchSize);
+                batch.add(first);
+                long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+                while (batch.size() < maxBatchSize) {
+                    Item next = queue.poll(until - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                inFlight.acquire();
+                post(batch);
+            }
+        } catch (InterruptedException e) {
+            logger.warning("write pipeline interrupted, failing queued objects");
+            List<Item> left = new ArrayList<Item>();
+            queue.drainTo(left);
+            for (Item item : left) {
+                item.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void post(final List<Item> batch) {
+        CompletableFuture<String> response;
+        try {
+            if (bulkPath == null) {
+                response = helper.postAPICallAsync(domain, path, batch.get(0).json);
+            } else {
+                StringBuilder body = new StringBuilder("[");
+                for (int i = 0; i < batch.size(); i++) {
+                    body.append(i > 0 ? "," : "").append(batch.get(i).json);
+                }
+                response = helper.postAPICallAsync(domain, bulkPath, body.append(']').toString());
+            }
+        } catch (RuntimeException ex) {
+            inFlight.release();
+            fail(batch, ex);
+            return;
+        }
+        postCount.incrementAndGet();
+        response.whenComplete((body, error) -> {
+            inFlight.release();
+            if (error != null) {
+                fail(batch, unwrap(error));
+            } else if (bulkPath == null) {
+                batch.get(0).result.complete(body);
+            } else {
+                completeBulk(batch, body);
+            }
+        });
+    }
+
+    /**
+     * Strips the CompletionException or ExecutionException around a failed
+     * call; any other exception is the failure itself
+     */
+    private static Throwable unwrap(Throwable error) {
+        if ((error instanceof CompletionException || error instanceof ExecutionException)
+                && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+
+    private static void completeBulk(List<Item> batch, String body) {
+        JsonArray results;
+        try {
+            JsonElement parsed = new JsonParser().parse(body);
+            results = parsed.isJsonArray() ? parsed.getAsJsonArray() : null;
+        } catch (JsonParseException ex) {
+            results = null;
+        }
+        if (results == null || results.size() != batch.size()) {
+            fail(batch, new IOException("bulk response does not match the "
+                    + batch.size() + " posted objects"));
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result.complete(results.get(i).toString());
+        }
+    }
+
+    private static void fail(List<Item> batch, Throwable error) {
+        for (Item item : batch) {
+            item.result.completeExceptionally(error);
+        }
+    }
+
+    private static class Item {
+        private final String json;
+        private final CompletableFuture<String> result = new CompletableFuture<String>();
+
+        private Item(String json) {
+            this.json = json;
+        }
+    }
+}
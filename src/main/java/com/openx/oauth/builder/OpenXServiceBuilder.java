@@ -13,6 +13,8 @@ package com.openx.oauth.builder;
 
 import com.openx.oauth.api.OpenXApi;
 import com.openx.oauth.service.OpenXServiceImpl;
+import com.openx.oauth.transport.OpenXHttpTransport;
+import org.apache.http.HttpHost;
 import org.scribe.builder.api.Api;
 import org.scribe.model.OAuthConfig;
 import org.scribe.model.OAuthConstants;
@@ -29,6 +31,9 @@ public class OpenXServiceBuilder {
     private String callback;
     private OpenXApi api;
     private String scope;
+    private HttpHost proxy;
+    private boolean ignoreSslCertificate;
+    private OpenXHttpTransport transport;
 
     /**
      * Object Constructor
@@ -108,6 +113,42 @@ public class OpenXServiceBuilder {
         return this;
     }
 
+    /**
+     * Configures the proxy used for the token requests of this service only
+     *
+     * @param proxy the proxy, or null for the JVM's default
+     * @return the {@link OpenXServiceBuilder} instance for method chaining
+     */
+    public OpenXServiceBuilder proxy(HttpHost proxy) {
+        this.proxy = proxy;
+        return this;
+    }
+
+    /**
+     * Disables the SSL certificate check for the token requests of this
+     * service only
+     *
+     * @param ignoreSslCertificate
+     * @return the {@link OpenXServiceBuilder} instance for method chaining
+     */
+    public OpenXServiceBuilder ignoreSslCertificate(boolean ignoreSslCertificate) {
+        this.ignoreSslCertificate = ignoreSslCertificate;
+        return this;
+    }
+
+    /**
+     * Sends the token requests through a pooled transport instead of a
+     * connection per request; proxy() and ignoreSslCertificate() are then
+     * taken from the transport
+     *
+     * @param transport
+     * @return the {@link OpenXServiceBuilder} instance for method chaining
+     */
+    public OpenXServiceBuilder transport(OpenXHttpTransport transport) {
+        this.transport = transport;
+        return this;
+    }
+
     /**
      * Returns the fully configured {@link OpenXServiceImpl}
      * 
@@ -117,6 +158,10 @@ public class OpenXServiceBuilder {
         Preconditions.checkNotNull(api, "You must specify a valid api through the provider() method");
         Preconditions.checkEmptyString(apiKey, "You must provide an api key");
         Preconditions.checkEmptyString(apiSecret, "You must provide an api secret");
-        return api.createService(new OAuthConfig(apiKey, apiSecret, callback), scope);
+        OpenXServiceImpl service = api.createService(new OAuthConfig(apiKey, apiSecret, callback), scope);
+        service.setProxy(proxy);
+        service.setIgnoreSslCertificate(ignoreSslCertificate);
+        service.setTransport(transport);
+        return service;
     }
 }
\ No newline at end of file
@@ -0,0 +1,308 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.builder;
+
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.ssl.TrustStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.ssl.SSLContexts;
+
+import com.openx.oauth.redirect.OpenXRedirectStrategy;
+import com.openx.oauth.transport.OpenXHttpTransport;
+
+/**
+ * OpenX HTTP Transport Builder Class
+ */
+public class OpenXTransportBuilder {
+
+    private static final Logger logger = Logger.getLogger(OpenXTransportBuilder.class.getName());
+
+    private int maxTotal;
+    private int maxPerRoute;
+    private long idleTimeoutMillis;
+    private long keepAliveMillis;
+    private int connectTimeoutMillis;
+    private int socketTimeoutMillis;
+    private int connectionRequestTimeoutMillis;
+    private HttpHost proxy;
+    private boolean ignoreSslCertificate;
+
+    /**
+     * Object Constructor
+     */
+    public OpenXTransportBuilder() {
+        this.maxTotal = 200;
+        this.maxPerRoute = 50;
+        this.idleTimeoutMillis = 30000;
+        this.keepAliveMillis = 60000;
+        this.connectTimeoutMillis = 10000;
+        this.socketTimeoutMillis = 60000;
+        this.connectionRequestTimeoutMillis = 30000;
+    }
+
+    /**
+     * Configures the maximum number of pooled connections over all routes
+     *
+     * @param maxTotal
+     * @return the {@link OpenXTransportBuilder} instance for method chaining
+     */
+    public OpenXTransportBuilder maxTotal(int maxTotal) {
+        checkPositive(maxTotal, "maxTotal must be positive");
+        this.maxTotal = maxTotal;
+        return this;
+    }
+
+    /**
+     * Configures the maximum number of pooled connections per route
+     *
+     * @param maxPerRoute
+     * @return the {@link OpenXTransportBuilder} instance for method chaining
+     */
+    public OpenXTransportBuilder maxPerRoute(int maxPerRoute) {
+        checkPositive(maxPerRoute, "maxPerRoute must be positive");
+        this.maxPerRoute = maxPerRoute;
+        return this;
+    }
+
+    /**
+     * Configures how long a connection may sit idle before it is evicted
+     *
+     * @param idleTimeout
+     * @param unit
+     * @return the {@link OpenXTransportBuilder} instance for method chaining
+     */
+    public OpenXTransportBuilder idleTimeout(long idleTimeout, TimeUnit unit) {
+        checkPositive(idleTimeout, "idleTimeout must be positive");
+        this.idleTimeoutMillis = unit.toMillis(idleTimeout);
+        return this;
+    }
+
+    /**
+     * Configures the upper bound for keep-alive. A shorter Keep-Alive
+     * timeout sent by the server always wins.
+     *
+     * @param keepAlive
+     * @param unit
+     * @return the {@link OpenXTransportBuilder} instance for method chaining
+     */
+    public OpenXTransportBuilder keepAlive(long keepAlive, TimeUnit unit) {
+        checkPositive(keepAlive, "keepAlive must be positive");
+        this.keepAliveMillis = unit.toMillis(keepAlive);
+        return this;
+    }
+
+    /**
+     * Configures the connect, socket read and pool lease timeouts
+     *
+     * @param connectTimeout
+     * @param socketTimeout
+     * @param connectionRequestTimeout
+     * @param unit
+     * @return the {@link OpenXTransportBuilder} instance for method chaining
+     */
+    public OpenXTransportBuilder timeouts(long connectTimeout, long socketTimeout,
+            long connectionRequestTimeout, TimeUnit unit) {
+        this.connectTimeoutMillis = (int) unit.toMillis(connectTimeout);
+        this.socketTimeoutMillis = (int) unit.toMillis(socketTimeout);
+        this.connectionRequestTimeoutMillis = (int) unit.toMillis(connectionRequestTimeout);
+        return this;
+    }
+
+    /**
+     * Configures the proxy used for every request
+     *
+     * @param proxy the proxy, or null for a direct connection
+     * @return the {@link OpenXTransportBuilder} instance for method chaining
+     */
+    public OpenXTransportBuilder proxy(HttpHost proxy) {
+        this.proxy = proxy;
+        return this;
+    }
+
+    /**
+     * Disables SSL certificate and hostname checks.
+     * Make sure you only call trusted urls if you set this.
+     *
+     * @param ignoreSslCertificate
+     * @return the {@link OpenXTransportBuilder} instance for method chaining
+     */
+    public OpenXTransportBuilder ignoreSslCertificate(boolean ignoreSslCertificate) {
+        this.ignoreSslCertificate = ignoreSslCertificate;
+        return this;
+    }
+
+    /**
+     * Returns the fully configured {@link OpenXHttpTransport}
+     *
+     * @return fully configured {@link OpenXHttpTransport}
+     */
+    public OpenXHttpTransport build() {
+        PoolingHttpClientConnectionManager connectionManager =
+                new PoolingHttpClientConnectionManager(socketFactoryRegistry());
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        // re-check connections that were idle for a while before reuse
+        connectionManager.setValidateAfterInactivity(2000);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMillis)
+                .setSocketTimeout(socketTimeoutMillis)
+                .setConnectionRequestTimeout(connectionRequestTimeoutMillis)
+                .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy())
+                .setRedirectStrategy(new OpenXRedirectStrategy())
+                .setProxy(proxy)
+                .build();
+
+        PoolingNHttpClientConnectionManager asyncConnectionManager =
+                new PoolingNHttpClientConnectionManager(ioReactor(), sessionStrategyRegistry());
+        asyncConnectionManager.setMaxTotal(maxTotal);
+        asyncConnectionManager.setDefaultMaxPerRoute(maxPerRoute);
+
+        CloseableHttpAsyncClient asyncClient = HttpAsyncClients.custom()
+                .setThreadFactory(daemonThreads("openx-io-reactor"))
+                .setConnectionManager(asyncConnectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy())
+                .setRedirectStrategy(new OpenXRedirectStrategy())
+                .setProxy(proxy)
+                .build();
+
+        return new OpenXHttpTransport(connectionManager, httpClient,
+                asyncConnectionManager, asyncClient, idleTimeoutMillis);
+    }
+
+    private ConnectionKeepAliveStrategy keepAliveStrategy() {
+        final long max = keepAliveMillis;
+        return new ConnectionKeepAliveStrategy() {
+
+            @Override
+            public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                long duration = DefaultConnectionKeepAliveStrategy.INSTANCE
+                        .getKeepAliveDuration(response, context);
+                return (duration > 0 && duration < max) ? duration : max;
+            }
+        };
+    }
+
+    /**
+     * Like the evictor, the reactor threads must not keep the JVM running
+     * when a transport is never closed
+     */
+    private static ThreadFactory daemonThreads(final String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private DefaultConnectingIOReactor ioReactor() {
+        IOReactorConfig config = IOReactorConfig.custom()
+                .setConnectTimeout(connectTimeoutMillis)
+                .setSoTimeout(socketTimeoutMillis)
+                .build();
+        try {
+            return new DefaultConnectingIOReactor(config, daemonThreads("openx-io-dispatcher"));
+        } catch (IOReactorException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Registry<SchemeIOSessionStrategy> sessionStrategyRegistry() {
+        SSLIOSessionStrategy sslStrategy;
+        if (ignoreSslCertificate) {
+            sslStrategy = new SSLIOSessionStrategy(trustAllContext(),
+                    NoopHostnameVerifier.INSTANCE);
+        } else {
+            sslStrategy = SSLIOSessionStrategy.getDefaultStrategy();
+        }
+        return RegistryBuilder.<SchemeIOSessionStrategy>create()
+                .register("http", NoopIOSessionStrategy.INSTANCE)
+                .register("https", sslStrategy)
+                .build();
+    }
+
+    private Registry<ConnectionSocketFactory> socketFactoryRegistry() {
+        SSLConnectionSocketFactory sslSocketFactory;
+        if (ignoreSslCertificate) {
+            logger.info("disable ssl certificate check");
+            sslSocketFactory = new SSLConnectionSocketFactory(trustAllContext(),
+                    NoopHostnameVerifier.INSTANCE);
+        } else {
+            sslSocketFactory = SSLConnectionSocketFactory.getSocketFactory();
+        }
+        return RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", sslSocketFactory)
+                .build();
+    }
+
+    /**
+     * apache httpclient use https proxy: peer not authenticated
+     */
+    private SSLContext trustAllContext() {
+        try {
+            return SSLContexts.custom().loadTrustMaterial(new TrustStrategy() {
+
+                @Override
+                public boolean isTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+                    return true;
+                }
+            }).build();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void checkPositive(long value, String message) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.cache;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent identical calls share one in-flight execution
+ * ("single flight"). The first caller for a key runs the call; callers that
+ * arrive while it is running wait for and receive the same result. Nothing
+ * is remembered once the call has finished.
+ *
+ * Keys must include the session so different tokens never share results.
+ * @param <V> result type
+ */
+public class RequestCoalescer<V> {
+
+    /**
+     * A blocking call that may fail with an IOException
+     * @param <V> result type
+     */
+    public interface Call<V> {
+
+        /**
+         * Runs the call
+         * @return the result
+         * @throws IOException
+         */
+        V call() throws IOException;
+    }
+
+    private final ConcurrentMap<String, CompletableFuture<V>> inFlight =
+            new ConcurrentHashMap<String, CompletableFuture<V>>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Runs the call, or joins the identical call already in flight
+     * @param key
+     * @param call
+     * @return the shared result
+     * @throws IOException if the shared call failed
+     */
+    public V execute(String key, Call<V> call) throws IOException {
+        CompletableFuture<V> mine = new CompletableFuture<V>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            return await(running);
+        }
+        try {
+            V result = call.call();
+            mine.complete(result);
+            return result;
+        } catch (IOException | RuntimeException ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Starts the call, or joins the identical call already in flight.
+     * Cancelling the returned future does not affect the other callers.
+     * @param key
+     * @param call
+     * @return future completed with the shared result
+     */
+    public CompletableFuture<V> executeAsync(final String key,
+            Supplier<CompletableFuture<V>> call) {
+        final CompletableFuture<V> mine = new CompletableFuture<V>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            return running.thenApply(result -> result);
+        }
+        try {
+            call.get().whenComplete((result, error) -> {
+                inFlight.remove(key, mine);
+                if (error != null) {
+                    mine.completeExceptionally(error);
+                } else {
+                    mine.complete(result);
+                }
+            });
+        } catch (RuntimeException ex) {
+            inFlight.remove(key, mine);
+            mine.completeExceptionally(ex);
+        }
+        return mine.thenApply(result -> result);
+    }
+
+    /**
+     * @return number of calls that joined a call already in flight
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return number of distinct calls currently in flight
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private static <V> V await(CompletableFuture<V> running) throws IOException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return running.get();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw new IOException(cause.getMessage(), cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded LRU cache for GET response bodies.
+ *
+ * Entries are keyed by session and request URL and tagged with the entity
+ * type they belong to (account, site, ...), which selects their TTL and
+ * lets a write to that entity type invalidate them. A stale entry is kept
+ * until evicted so it can be revalidated with its ETag or Last-Modified.
+ *
+ * Every invalidation starts a new generation of its entity type. A response
+ * is stored only if no invalidation happened since its request was sent,
+ * so a GET that overlapped a write cannot put the old body back.
+ */
+public class ResponseCache {
+
+    private final int maxEntries;
+    private final long defaultTtlMillis;
+    private final Map<String, Long> ttlByEntity;
+    private final LinkedHashMap<String, Entry> entries;
+    private final Map<String, Long> generations = new HashMap<String, Long>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Object Constructor
+     * @param maxEntries least recently used entries beyond this are evicted
+     * @param defaultTtl time an entry stays fresh unless set per entity type
+     * @param unit
+     */
+    public ResponseCache(int maxEntries, long defaultTtl, TimeUnit unit) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.defaultTtlMillis = unit.toMillis(defaultTtl);
+        this.ttlByEntity = new ConcurrentHashMap<String, Long>();
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ResponseCache.Entry> eldest) {
+                if (size() > ResponseCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Sets the TTL for one entity type
+     * @param entityType e.g. "account"
+     * @param ttl
+     * @param unit
+     * @return this cache for method chaining
+     */
+    public ResponseCache ttl(String entityType, long ttl, TimeUnit unit) {
+        ttlByEntity.put(entityType, unit.toMillis(ttl));
+        return this;
+    }
+
+    /**
+     * Looks up an entry and records a hit if it is fresh, a miss otherwise
+     * @param key
+     * @return the entry, possibly stale, or null
+     */
+    public Entry get(String key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.isFresh()) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Gets the invalidation generation of an entity type; read it before
+     * sending the request whose response is to be stored
+     * @param entityType
+     * @return generation, changed by every {@link #invalidate(String)}
+     */
+    public long generation(String entityType) {
+        synchronized (entries) {
+            Long generation = generations.get(entityType);
+            return generation != null ? generation : 0;
+        }
+    }
+
+    /**
+     * Stores a 200 response unless its entity type was invalidated after
+     * the request was sent
+     * @param key
+     * @param entityType
+     * @param generation {@link #generation(String)} read before the request
+     * @param body
+     * @param etag may be null
+     * @param lastModified may be null
+     * @return false if the response was older than an invalidation
+     */
+    public boolean put(String key, String entityType, long generation, String body,
+            String etag, String lastModified) {
+        Entry entry = new Entry(entityType, body, etag, lastModified,
+                System.currentTimeMillis() + ttlMillis(entityType));
+        synchronized (entries) {
+            Long current = generations.get(entityType);
+            if (current != null && generation < current) {
+                return false;
+            }
+            entries.put(key, entry);
+            return true;
+        }
+    }
+
+    /**
+     * Marks a stale entry fresh again after a 304 Not Modified, unless its
+     * entity type was invalidated after the request was sent
+     * @param key
+     * @param entry the entry that was revalidated
+     * @param generation {@link #generation(String)} read before the request
+     */
+    public void revalidated(String key, Entry entry, long generation) {
+        revalidations.incrementAndGet();
+        put(key, entry.entityType, generation, entry.body, entry.etag, entry.lastModified);
+    }
+
+    /**
+     * Drops every entry of an entity type, for all sessions
+     * @param entityType
+     */
+    public void invalidate(String entityType) {
+        synchronized (entries) {
+            Long generation = generations.get(entityType);
+            generations.put(entityType, generation != null ? generation + 1 : 1);
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().entityType.equals(entityType)) {
+                    it.remove();
+                    invalidations.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops every entry
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return number of entries, fresh or stale
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return lookups answered by a fresh entry
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return lookups that found no entry or a stale one
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return stale entries confirmed by a 304 Not Modified
+     */
+    public long getRevalidationCount() {
+        return revalidations.get();
+    }
+
+    /**
+     * @return entries dropped because the cache was full
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return entries dropped by a write to their entity type
+     */
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    private long ttlMillis(String entityType) {
+        Long ttl = ttlByEntity.get(entityType);
+        return ttl != null ? ttl : defaultTtlMillis;
+    }
+
+    /**
+     * A cached response body with its validators
+     */
+    public static class Entry {
+
+        private final String entityType;
+        private final String body;
+        private final String etag;
+        private final String lastModified;
+        private final long expiresAt;
+
+        Entry(String entityType, String body, String etag, String lastModified,
+                long expiresAt) {
+            this.entityType = entityType;
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @return true until the TTL has passed
+         */
+        public boolean isFresh() {
+            return System.currentTimeMillis() < expiresAt;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.client;
+
+/**
+ * Outcome of a single API call made as part of a batch: either the
+ * response body or the error that call failed with.
+ */
+public class ApiResult {
+
+    private final String body;
+    private final Throwable error;
+    private final int attempts;
+
+    private ApiResult(String body, Throwable error, int attempts) {
+        this.body = body;
+        this.error = error;
+        this.attempts = attempts;
+    }
+
+    /**
+     * Creates a successful result
+     * @param body the response body
+     * @return ApiResult
+     */
+    public static ApiResult success(String body) {
+        return success(body, 1);
+    }
+
+    /**
+     * Creates a successful result
+     * @param body the response body
+     * @param attempts requests sent for the call
+     * @return ApiResult
+     */
+    public static ApiResult success(String body, int attempts) {
+        return new ApiResult(body, null, attempts);
+    }
+
+    /**
+     * Creates a failed result
+     * @param error what the call failed with
+     * @return ApiResult
+     */
+    public static ApiResult failure(Throwable error) {
+        return failure(error, 1);
+    }
+
+    /**
+     * Creates a failed result
+     * @param error what the call failed with
+     * @param attempts requests sent for the call
+     * @return ApiResult
+     */
+    public static ApiResult failure(Throwable error, int attempts) {
+        return new ApiResult(null, error, attempts);
+    }
+
+    /**
+     * @return true if the call returned a 200 response
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @return the response body, or null if the call failed
+     */
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * @return the error, or null if the call succeeded
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * @return requests sent for the call, including retries; 0 if the
+     * call was answered by a concurrent identical call
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * toString method
+     * @return
+     */
+    @Override
+    public String toString() {
+        return isSuccess() ? String.format("@ApiResult(success, attempts=%d)", attempts)
+                : String.format("@ApiResult(failure, attempts=%d, %s)", attempts, error);
+    }
+}
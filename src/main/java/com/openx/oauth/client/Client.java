@@ -11,6 +11,7 @@
  *======================================================================*/
 package com.openx.oauth.client;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.Map;
@@ -22,13 +23,19 @@ import org.scribe.model.Verifier;
 
 import com.openx.oauth.api.OpenXApi;
 import com.openx.oauth.builder.OpenXServiceBuilder;
+import com.openx.oauth.builder.OpenXTransportBuilder;
 import com.openx.oauth.service.OpenXServiceImpl;
+import com.openx.oauth.session.OX3Session;
+import com.openx.oauth.session.SessionGuard;
+import com.openx.oauth.session.SessionStore;
+import com.openx.oauth.transport.OpenXHttpTransport;
 
 /**
  * OAuth Java Client
  *
+ * Call {@link #close()} to release the pooled connections when done.
  */
-public class Client
+public class Client implements Closeable
 {
     /**
      * Path to use if the instance is API v1
@@ -62,6 +69,9 @@ public class Client
     private Helper helper;
     private HttpHost proxy;
     private boolean ignoreSslCertificate;
+    private OpenXHttpTransport transport;
+    private boolean ownsTransport;
+    private SessionStore sessionStore;
 
     /**
      * Create the OpenX OAuth Client
@@ -190,23 +200,32 @@ public class Client
 
     /**
      * Perform the login procedure
+     *
+     * The helper logs in again by itself whenever the API rejects its
+     * session, see {@link Helper#setSessionGuard}.
      */
     public void OX3OAuth() throws UnsupportedEncodingException,
             IOException, Exception
     {
+        if (!resumeSession()) {
+            helper = new Helper(getTransport(), loginUrl, username, password, null);
+            logIn(helper);
+        }
+        final Helper session = helper;
+        session.setSessionGuard(new SessionGuard(() -> logIn(session)));
+    }
+
+    /**
+     * Runs the OAuth flow and installs the new access token in a helper
+     * @param target
+     */
+    private void logIn(Helper target) throws Exception {
         // start the OAuth login process
         logger.fine( "Starting OAuth process..." );
 
-        // Override system proxy settings for both http & https connections. Necessary for OAuth.
+        // the proxy applies to this client's token requests only
         if (proxy != null) {
-            String proxyHost = proxy.getHostName();
-            String proxyPort = String.valueOf(proxy.getPort());
-            logger.fine("Using proxyHost = " + proxyHost);
-            logger.fine("Using proxyPort = " + proxyPort);
-            System.setProperty("http.proxyHost", proxyHost);
-            System.setProperty("http.proxyPort", proxyPort);
-            System.setProperty("https.proxyHost", proxyHost);
-            System.setProperty("https.proxyPort", proxyPort);
+            logger.fine("Using proxy = " + proxy);
         }
 
         OpenXApi api = new OpenXApi(requestTokenUrl, accessTokenUrl,
@@ -215,6 +234,9 @@ public class Client
            .provider(api)
            .apiKey(apiKey)
            .apiSecret(apiSecret)
+           .proxy(proxy)
+           .ignoreSslCertificate(ignoreSslCertificate)
+           .transport(getTransport())
            .build();
 
         // get the request token
@@ -223,8 +245,9 @@ public class Client
 
         // now to log in
         String result;
-        helper = new Helper(proxy, loginUrl, username, password, requestToken.getToken(), ignoreSslCertificate);
-        result = helper.doLogin();
+        Helper login = new Helper(getTransport(), loginUrl, username, password,
+                requestToken.getToken());
+        result = login.doLogin();
 
         logger.fine("SSO Login response: " + result);
         if(result.isEmpty()) {
@@ -234,7 +257,7 @@ public class Client
         // process the result from the OAuth server
         Map<String, String> params;
         try {
-            params = helper.splitQueryString(
+            params = login.splitQueryString(
                     result.replace("oob?", ""));
         } catch (UnsupportedEncodingException ex) {
             logger.warning( "You should probably have UTF-8 encoding..." );
@@ -251,12 +274,78 @@ public class Client
         logger.fine( "Access Token Output: " + accessToken.toString() );
 
         // now submit the access token to the API to validate
-        boolean valid = helper.validateToken(domain,
+        target.createCookieStore(domain, accessToken.getToken());
+        boolean valid = target.validateToken(domain,
                     accessToken.getToken(), path);
 
         if(!valid) {
             throw new Exception("The API could not verify the access token");
         }
+        saveSession(accessToken);
+    }
+
+    /**
+     * Keeps the access token in a store so later clients, e.g. the next run
+     * of a batch job, reuse it instead of logging in again. OX3OAuth only
+     * logs in if there is no stored session or the API rejects its token.
+     * @param sessionStore the store, or null to always log in
+     */
+    public synchronized void setSessionStore(SessionStore sessionStore) {
+        this.sessionStore = sessionStore;
+    }
+
+    /**
+     * Gets the session store
+     * @return SessionStore, null if sessions are not stored
+     */
+    public synchronized SessionStore getSessionStore() {
+        return sessionStore;
+    }
+
+    /**
+     * Sets up the helper with the stored session if the API still accepts it
+     * @return true if the login can be skipped
+     */
+    private boolean resumeSession() {
+        SessionStore store = getSessionStore();
+        if (store == null) {
+            return false;
+        }
+        try {
+            OX3Session session = store.load(sessionKey());
+            if (session == null) {
+                return false;
+            }
+            Helper resumed = new Helper(getTransport(), loginUrl, username, password, null);
+            resumed.createCookieStore(domain, session.getToken());
+            if (resumed.checkSession(domain, path)) {
+                logger.fine("Resumed stored session " + session);
+                helper = resumed;
+                return true;
+            }
+            logger.fine("Stored session was rejected, logging in");
+            store.remove(sessionKey());
+        } catch (IOException e) {
+            logger.warning("Could not resume stored session: " + e);
+        }
+        return false;
+    }
+
+    private void saveSession(Token accessToken) {
+        SessionStore store = getSessionStore();
+        if (store == null) {
+            return;
+        }
+        try {
+            store.save(sessionKey(), new OX3Session(accessToken.getToken(),
+                    accessToken.getSecret(), System.currentTimeMillis()));
+        } catch (IOException e) {
+            logger.warning("Could not store session: " + e);
+        }
+    }
+
+    private String sessionKey() {
+        return username + "@" + domain;
     }
 
     /**
@@ -266,4 +355,55 @@ public class Client
     public Helper getHelper() {
         return helper;
     }
+
+    /**
+     * Uses a shared transport instead of creating one for this client.
+     * A shared transport is not closed by {@link #close()}; a transport the
+     * client created itself is closed now, so call this before
+     * {@link #OX3OAuth()}.
+     * @param transport
+     */
+    public synchronized void setTransport(OpenXHttpTransport transport) {
+        if (ownsTransport && this.transport != null && this.transport != transport) {
+            try {
+                this.transport.close();
+            } catch (IOException ex) {
+                logger.warning("Could not close the replaced transport: " + ex);
+            }
+        }
+        this.transport = transport;
+        this.ownsTransport = false;
+    }
+
+    /**
+     * Gets the transport, creating a pooled one on first use
+     * @return OpenXHttpTransport
+     */
+    public synchronized OpenXHttpTransport getTransport() {
+        if (transport == null) {
+            transport = new OpenXTransportBuilder()
+                    .proxy(proxy)
+                    .ignoreSslCertificate(ignoreSslCertificate)
+                    .build();
+            ownsTransport = true;
+        }
+        return transport;
+    }
+
+    /**
+     * Stops the session refresh and releases the pooled connections if this
+     * client created them
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (helper != null && helper.getSessionGuard() != null) {
+            helper.getSessionGuard().stopRefresh();
+        }
+        if (ownsTransport && transport != null) {
+            transport.close();
+            transport = null;
+            ownsTransport = false;
+        }
+    }
 }
@@ -12,58 +12,103 @@
 package com.openx.oauth.client;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Type;
 import java.net.URLDecoder;
-import java.security.cert.CertificateException;
-import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.logging.Logger;
-
-import javax.net.ssl.SSLException;
-import javax.net.ssl.SSLSession;
-import javax.net.ssl.SSLSocket;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.http.Consts;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpHost;
-import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPatch;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
-import org.apache.http.conn.params.ConnRoutePNames;
-import org.apache.http.conn.scheme.Scheme;
-import org.apache.http.conn.ssl.SSLSocketFactory;
-import org.apache.http.conn.ssl.TrustStrategy;
-import org.apache.http.conn.ssl.X509HostnameVerifier;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.BasicCookieStore;
-import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.cookie.BasicClientCookie;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.protocol.HTTP;
 import org.apache.http.util.EntityUtils;
 
-import com.openx.oauth.redirect.OpenXRedirectStrategy;
+import com.google.gson.JsonElement;
+import com.openx.oauth.builder.OpenXTransportBuilder;
+import com.openx.oauth.cache.RequestCoalescer;
+import com.openx.oauth.cache.ResponseCache;
+import com.openx.oauth.retry.CircuitBreaker;
+import com.openx.oauth.retry.CircuitOpenException;
+import com.openx.oauth.retry.HedgePolicy;
+import com.openx.oauth.retry.RetryPolicy;
+import com.openx.oauth.session.SessionGuard;
+import com.openx.oauth.stream.DecoderRegistry;
+import com.openx.oauth.stream.OX3ObjectIterator;
+import com.openx.oauth.stream.ObjectDecoder;
+import com.openx.oauth.stream.PageConsumer;
+import com.openx.oauth.stream.PageSource;
+import com.openx.oauth.stream.ParallelCrawler;
+import com.openx.oauth.stream.PagingCursor;
+import com.openx.oauth.throttle.Throttle;
+import com.openx.oauth.transport.BufferedResponse;
+import com.openx.oauth.transport.OpenXHttpTransport;
+import com.openx.oauth.transport.RequestBodies;
 
 /**
  * Client Helper class
+ *
+ * All calls go through one pooled {@link OpenXHttpTransport}, so a single
+ * Helper may be shared by many threads. Helpers made without a transport
+ * share one default transport per proxy setting, which lives as long as
+ * the JVM, so helpers hold nothing that needs closing; close a transport
+ * you passed in yourself.
  * @author keithmiller
  */
 public class Helper {
-    private static final Logger logger = Logger.getLogger(Helper.class.getName());
     protected HttpHost proxy;
     protected String url;
     protected String username;
     protected String password;
     protected String token;
     protected BasicCookieStore cookieStore;
-    private final boolean ignoreSslCertificate;
+    protected volatile String sessionToken;
+    protected final OpenXHttpTransport transport;
+    private volatile ResponseCache responseCache;
+    private volatile RequestCoalescer<BufferedResponse> requestCoalescer;
+    private volatile Throttle throttle;
+    private volatile RetryPolicy retryPolicy;
+    private volatile HedgePolicy hedgePolicy;
+    private volatile SessionGuard sessionGuard;
+    private static final int MAX_THROTTLED_RESENDS = 3;
+    private static final ConcurrentMap<String, OpenXHttpTransport> SHARED_TRANSPORTS =
+            new ConcurrentHashMap<String, OpenXHttpTransport>();
 
     /**
      * Object Constructor
@@ -78,22 +123,63 @@ public class Helper {
 
     /**
      * Object Constructor
+     *
+     * Requests go through the default transport shared by all helpers with
+     * the same proxy settings, so creating helpers this way is cheap.
      * @param proxy the proxy to use for the request
      * @param url
      * @param username
      * @param password
      * @param token
+     * @param ignoreSslCertificate
      */
     public Helper(HttpHost proxy, String url, String username, String password, String token, boolean ignoreSslCertificate) {
+        this(sharedTransport(proxy, ignoreSslCertificate), url, username, password, token);
         this.proxy = proxy;
+    }
+
+    /**
+     * Object Constructor
+     *
+     * The transport is shared and is not closed by {@link #close()}.
+     * @param transport pooled transport to send requests through
+     * @param url
+     * @param username
+     * @param password
+     * @param token
+     */
+    public Helper(OpenXHttpTransport transport, String url, String username, String password, String token) {
+        this.transport = transport;
         this.url = url;
         this.username = username;
         this.password = password;
         this.token = token;
-        this.ignoreSslCertificate = ignoreSslCertificate;
         this.cookieStore = null;
     }
 
+    /**
+     * Gets the default transport for a proxy setting, creating it on first
+     * use. It is never closed.
+     */
+    private static OpenXHttpTransport sharedTransport(HttpHost proxy,
+            boolean ignoreSslCertificate) {
+        String key = proxy + " " + ignoreSslCertificate;
+        OpenXHttpTransport shared = SHARED_TRANSPORTS.get(key);
+        if (shared == null) {
+            synchronized (SHARED_TRANSPORTS) {
+                shared = SHARED_TRANSPORTS.get(key);
+                if (shared == null) {
+                    shared = new OpenXTransportBuilder()
+                            .proxy(proxy)
+                            .ignoreSslCertificate(ignoreSslCertificate)
+                            .build();
+                    SHARED_TRANSPORTS.put(key, shared);
+                }
+            }
+        }
+        return shared;
+    }
+
     /**
      * Log in to the OpenX OAuth server
      * @return String login string
@@ -101,8 +187,6 @@ public class Helper {
      * @throws IOException
      */
     public String doLogin() throws UnsupportedEncodingException, IOException {
-        DefaultHttpClient httpclient = openxHttpClientFactory();
-
         List<NameValuePair> formparams = new ArrayList<NameValuePair>();
         formparams.add(new BasicNameValuePair("email", username));
         formparams.add(new BasicNameValuePair("password", password));
@@ -113,18 +197,18 @@ public class Helper {
         HttpPost httpost = new HttpPost(this.url);
         httpost.setEntity(formEntity);
 
-        HttpResponse response = httpclient.execute(httpost);
-        HttpEntity entity = response.getEntity();
-
-        String result;
-        if (response.getStatusLine().getStatusCode() == 200) {
-            result = EntityUtils.toString(entity);
-        } else {
-            result = "";
+        // the SSO cookies belong to this login only
+        CloseableHttpResponse response = transport.execute(httpost,
+                new BasicCookieStore());
+        try {
+            if (response.getStatusLine().getStatusCode() == 200) {
+                return EntityUtils.toString(response.getEntity());
+            }
+            EntityUtils.consume(response.getEntity());
+            return "";
+        } finally {
+            response.close();
         }
-
-        httpclient.getConnectionManager().shutdown();
-        return result;
     }
 
     /**
@@ -158,34 +242,59 @@ public class Helper {
      */
     public boolean validateToken(String domain, String token, String path)
             throws IOException {
-        DefaultHttpClient httpclient = openxHttpClientFactory();
-
-        if (cookieStore == null) {
-            createCookieStore(domain, token);
+        synchronized (this) {
+            if (cookieStore == null) {
+                createCookieStore(domain, token);
+            }
         }
 
-        httpclient.setCookieStore(cookieStore);
-
         // This extra validation step is only needed for v1:
         if (path.equals(Client.API_PATH_V1)) {
             HttpPut httpput = new HttpPut(domain + path + "session/validate");
-            HttpResponse response = httpclient.execute(httpput);
-
-            httpclient.getConnectionManager().shutdown();
-
-            if (response.getStatusLine().getStatusCode() != 200) {
-                return false;
+            CloseableHttpResponse response = transport.execute(httpput, cookieStore);
+            try {
+                EntityUtils.consume(response.getEntity());
+                if (response.getStatusLine().getStatusCode() != 200) {
+                    return false;
+                }
+            } finally {
+                response.close();
             }
         }
         return true;
     }
 
+    /**
+     * Checks that the API still accepts the session token, e.g. one restored
+     * from a SessionStore. Unlike validateToken this also calls the API for
+     * v2, where it reads the current session.
+     * @param domain
+     * @param path
+     * @return false if the API rejected the token
+     * @throws IOException on a transport error or an unexpected response
+     */
+    public boolean checkSession(String domain, String path) throws IOException {
+        HttpUriRequest request = path.equals(Client.API_PATH_V1)
+                ? new HttpPut(domain + path + "session/validate")
+                : new HttpGet(domain + path + "session");
+        BufferedResponse response = transport.executeBuffered(request,
+                ensureCookieStore(domain));
+        int status = response.getStatus();
+        if (status == HttpStatus.SC_OK) {
+            return true;
+        }
+        if (status == HttpStatus.SC_UNAUTHORIZED || status == HttpStatus.SC_FORBIDDEN) {
+            return false;
+        }
+        throw new IOException("RETURNCODE:" + status);
+    }
+
     /**
      * Creates the OX3 API cookie store
      * @param domain
      * @param value
      */
-    protected void createCookieStore(String domain, String value) {
+    protected synchronized void createCookieStore(String domain, String value) {
         if(cookieStore == null) {
             cookieStore = new BasicCookieStore();
         }
@@ -195,6 +304,19 @@ public class Helper {
         cookie.setDomain(domain.replace("http://", ""));
         cookie.setPath("/");
         cookieStore.addCookie(cookie);
+        sessionToken = value;
+    }
+
+    /**
+     * Creates the cookie store from the current token if it does not exist yet
+     * @param domain
+     * @return the cookie store
+     */
+    protected synchronized BasicCookieStore ensureCookieStore(String domain) {
+        if (cookieStore == null) {
+            createCookieStore(domain, token);
+        }
+        return cookieStore;
     }
 
     /**
@@ -267,28 +389,734 @@ public class Helper {
      * @return results from the API
      * @throws IOException
      */
-    protected String makeAPICall(String domain, String request)
+    protected String makeAPICall(final String domain, final String request)
             throws IOException {
-        DefaultHttpClient httpclient = openxHttpClientFactory();
+        ResponseCache cache = responseCache;
+        RequestCoalescer<BufferedResponse> coalescer = requestCoalescer;
+        if (cache == null && coalescer == null) {
+            return bodyOrEmpty(exchange(domain, new HttpGet(request)));
+        }
 
-        if (cookieStore == null) {
-            createCookieStore(domain, token);
+        ensureCookieStore(domain);
+        final String key = sessionKey(request);
+        final ResponseCache.Entry cached = cache != null ? cache.get(key) : null;
+        if (cached != null && cached.isFresh()) {
+            return cached.getBody();
         }
+        if (coalescer == null) {
+            return bodyOrEmpty(loadAPICall(domain, request, key, cached));
+        }
+        return bodyOrEmpty(coalescer.execute(key,
+                () -> loadAPICall(domain, request, key, cached)));
+    }
 
-        httpclient.setCookieStore(cookieStore);
+    /**
+     * Fetches a GET response, revalidating and updating the cache if enabled
+     * @param domain
+     * @param request
+     * @param key
+     * @param cached the stale entry to revalidate, may be null
+     * @return the response, a 304 is answered from the cached entry
+     * @throws IOException
+     */
+    private BufferedResponse loadAPICall(String domain, String request, String key,
+            ResponseCache.Entry cached) throws IOException {
+        ResponseCache cache = responseCache;
+        String entityType = entityType(request);
+        long generation = cache != null ? cache.generation(entityType) : 0;
         HttpGet httpget = new HttpGet(request);
-        HttpResponse response = httpclient.execute(httpget);
-        HttpEntity entity = response.getEntity();
+        if (cached != null) {
+            if (cached.getEtag() != null) {
+                httpget.addHeader(HttpHeaders.IF_NONE_MATCH, cached.getEtag());
+            }
+            if (cached.getLastModified() != null) {
+                httpget.addHeader(HttpHeaders.IF_MODIFIED_SINCE, cached.getLastModified());
+            }
+        }
+        BufferedResponse response = exchange(domain, httpget);
+        if (cache == null) {
+            return response;
+        }
+        if (response.getStatus() == HttpStatus.SC_NOT_MODIFIED && cached != null) {
+            cache.revalidated(key, cached, generation);
+            return new BufferedResponse(HttpStatus.SC_OK, new Header[0], cached.getBody());
+        }
+        if (response.getStatus() == HttpStatus.SC_OK && response.getBody() != null) {
+            cache.put(key, entityType, generation, response.getBody(),
+                    response.getHeader(HttpHeaders.ETAG),
+                    response.getHeader(HttpHeaders.LAST_MODIFIED));
+        }
+        return response;
+    }
 
-        String result;
-        if (response.getStatusLine().getStatusCode() == 200) {
-            result = EntityUtils.toString(entity);
-        } else {
-            result = "";
+    /**
+     * Key identifying a request within the current session
+     * @param request
+     * @return key
+     */
+    protected String sessionKey(String request) {
+        return sessionToken + " " + request;
+    }
+
+    /**
+     * Sends a request with the session cookies and reads the whole response
+     * @param domain
+     * @param request
+     * @return the buffered response
+     * @throws IOException
+     */
+    protected BufferedResponse exchange(String domain, HttpUriRequest request)
+            throws IOException {
+        return exchange(domain, request, null);
+    }
+
+    /**
+     * Sends a request with the session cookies and reads the whole response,
+     * retrying it as the retry policy allows
+     * @param domain
+     * @param request
+     * @param attempts counts the attempts made, may be null
+     * @return the buffered response
+     * @throws IOException
+     */
+    protected BufferedResponse exchange(String domain, HttpUriRequest request,
+            AtomicInteger attempts) throws IOException {
+        SessionGuard guard = sessionGuard;
+        if (guard == null || !isRepeatable(request)) {
+            return sendWithRetries(domain, request, attempts);
+        }
+        long generation = guard.generation();
+        BufferedResponse response = sendWithRetries(domain, request, attempts);
+        if (response.getStatus() != HttpStatus.SC_UNAUTHORIZED) {
+            return response;
         }
+        if (!awaitRenewal(guard.renew(generation))) {
+            // the caller sees the rejection
+            return response;
+        }
+        reset(request);
+        return sendWithRetries(domain, request, attempts);
+    }
+
+    /**
+     * Sends a request, retrying it as the retry policy allows
+     */
+    private BufferedResponse sendWithRetries(String domain, HttpUriRequest request,
+            AtomicInteger attempts) throws IOException {
+        RetryPolicy policy = retryPolicy;
+        if (policy == null || !isRepeatable(request)) {
+            return send(domain, request, attempts);
+        }
+        CircuitBreaker breaker = policy.circuitBreaker(request.getURI());
+        long deadline = policy.deadline();
+        for (int attempt = 1; ; attempt++) {
+            boolean probe = breaker.check();
+            boolean settled = false;
+            BufferedResponse response;
+            long delay;
+            try {
+                response = send(domain, request, attempts);
+                recordOutcome(breaker, response.getStatus());
+                settled = true;
+            } catch (IOException ex) {
+                // an interrupted caller leaves the probe to the next call
+                if (RetryPolicy.isHostFailure(ex)) {
+                    breaker.onFailure();
+                    settled = true;
+                }
+                delay = policy.delayAfter(request.getMethod(), ex, attempt, deadline);
+                if (delay < 0) {
+                    throw ex;
+                }
+                pause(delay);
+                reset(request);
+                continue;
+            } finally {
+                if (probe && !settled) {
+                    breaker.release();
+                }
+            }
+            delay = retryDelay(policy, request, response.getStatus(), attempt, deadline);
+            if (delay < 0) {
+                return response;
+            }
+            pause(delay);
+            reset(request);
+        }
+    }
+
+    /**
+     * Sends a request once, waiting for the throttle if one is set
+     */
+    private BufferedResponse send(String domain, HttpUriRequest request,
+            AtomicInteger attempts) throws IOException {
+        HedgePolicy hedge = hedgePolicy;
+        if (hedge != null && isHedgeable(request)) {
+            return await(sendHedged(domain, request, attempts, hedge));
+        }
+        Throttle t = throttle;
+        if (t == null) {
+            count(attempts);
+            return transport.executeBuffered(request, ensureCookieStore(domain));
+        }
+        for (int attempt = 0; ; attempt++) {
+            acquire(t);
+            count(attempts);
+            BufferedResponse response;
+            try {
+                response = transport.executeBuffered(request, ensureCookieStore(domain));
+            } catch (IOException | RuntimeException ex) {
+                t.release(-1, null);
+                throw ex;
+            }
+            t.release(response.getStatus(), response.getHeader(HttpHeaders.RETRY_AFTER));
+            if (!resendThrottled(request, response, attempt)) {
+                return response;
+            }
+        }
+    }
+
+    /**
+     * Sends a request with the session cookies on the non-blocking client
+     * and reads the whole response
+     * @param domain
+     * @param request
+     * @return future completed with the buffered response
+     */
+    protected CompletableFuture<BufferedResponse> exchangeAsync(String domain,
+            HttpUriRequest request) {
+        return exchangeAsync(domain, request, null);
+    }
+
+    /**
+     * Sends a request with the session cookies on the non-blocking client
+     * and reads the whole response, retrying it as the retry policy allows
+     * @param domain
+     * @param request
+     * @param attempts counts the attempts made, may be null
+     * @return future completed with the buffered response
+     */
+    protected CompletableFuture<BufferedResponse> exchangeAsync(final String domain,
+            final HttpUriRequest request, final AtomicInteger attempts) {
+        final SessionGuard guard = sessionGuard;
+        if (guard == null || !isRepeatable(request)) {
+            return sendWithRetriesAsync(domain, request, attempts);
+        }
+        final long generation = guard.generation();
+        CompletableFuture<BufferedResponse> first =
+                sendWithRetriesAsync(domain, request, attempts);
+        CompletableFuture<BufferedResponse> result = first.thenCompose(response -> {
+            if (response.getStatus() != HttpStatus.SC_UNAUTHORIZED) {
+                return CompletableFuture.completedFuture(response);
+            }
+            return guard.renew(generation).handle((renewed, error) -> error)
+                    .thenCompose(error -> {
+                        if (error != null) {
+                            return CompletableFuture.completedFuture(response);
+                        }
+                        reset(request);
+                        return sendWithRetriesAsync(domain, request, attempts);
+                    });
+        });
+        cancelWith(result, first);
         return result;
     }
 
+    /**
+     * Sends a request on the non-blocking client, retrying it as the retry
+     * policy allows
+     */
+    private CompletableFuture<BufferedResponse> sendWithRetriesAsync(String domain,
+            HttpUriRequest request, AtomicInteger attempts) {
+        RetryPolicy policy = retryPolicy;
+        if (policy == null || !isRepeatable(request)) {
+            return sendAsync(domain, request, attempts);
+        }
+        CompletableFuture<BufferedResponse> result = new CompletableFuture<BufferedResponse>();
+        retryAsync(domain, request, attempts, policy, policy.circuitBreaker(request.getURI()),
+                policy.deadline(), 1, result);
+        return result;
+    }
+
+    private void retryAsync(final String domain, final HttpUriRequest request,
+            final AtomicInteger attempts, final RetryPolicy policy,
+            final CircuitBreaker breaker, final long deadline, final int attempt,
+            final CompletableFuture<BufferedResponse> result) {
+        final boolean probe;
+        try {
+            probe = breaker.check();
+        } catch (CircuitOpenException ex) {
+            result.completeExceptionally(ex);
+            return;
+        }
+        CompletableFuture<BufferedResponse> exchange;
+        try {
+            exchange = sendAsync(domain, request, attempts);
+        } catch (RuntimeException ex) {
+            if (probe) {
+                breaker.release();
+            }
+            result.completeExceptionally(ex);
+            return;
+        }
+        cancelWith(result, exchange);
+        exchange.whenComplete((response, error) -> {
+            long delay;
+            if (response == null) {
+                error = unwrap(error);
+                if (error instanceof CancellationException) {
+                    if (probe) {
+                        breaker.release();
+                    }
+                    result.cancel(false);
+                    return;
+                }
+                if (RetryPolicy.isHostFailure(error)) {
+                    breaker.onFailure();
+                } else if (probe) {
+                    breaker.release();
+                }
+                delay = policy.delayAfter(request.getMethod(), error, attempt, deadline);
+                if (delay < 0) {
+                    result.completeExceptionally(error);
+                    return;
+                }
+            } else {
+                recordOutcome(breaker, response.getStatus());
+                delay = retryDelay(policy, request, response.getStatus(), attempt, deadline);
+                if (delay < 0) {
+                    result.complete(response);
+                    return;
+                }
+            }
+            reset(request);
+            policy.schedule(() -> {
+                if (!result.isDone()) {
+                    retryAsync(domain, request, attempts, policy, breaker, deadline,
+                            attempt + 1, result);
+                }
+            }, delay);
+        });
+    }
+
+    /**
+     * Sends a request once on the non-blocking client, hedging it if a
+     * hedge policy is set
+     */
+    private CompletableFuture<BufferedResponse> sendAsync(String domain,
+            HttpUriRequest request, AtomicInteger attempts) {
+        HedgePolicy hedge = hedgePolicy;
+        if (hedge != null && isHedgeable(request)) {
+            return sendHedged(domain, request, attempts, hedge);
+        }
+        return sendOnceAsync(domain, request, attempts);
+    }
+
+    /**
+     * Sends a read request and, if no response arrived within the hedge
+     * delay, an identical second one. The first response wins and the other
+     * request is cancelled; a failure only counts once both requests failed.
+     */
+    private CompletableFuture<BufferedResponse> sendHedged(final String domain,
+            final HttpUriRequest request, final AtomicInteger attempts,
+            final HedgePolicy hedge) {
+        final CompletableFuture<BufferedResponse> result = new CompletableFuture<BufferedResponse>();
+        final AtomicInteger outstanding = new AtomicInteger(1);
+        hedge.onCall();
+        hedgeLeg(domain, request, attempts, hedge, outstanding, result);
+        hedge.schedule(() -> {
+            if (!result.isDone() && hedge.tryHedge()) {
+                outstanding.incrementAndGet();
+                HttpGet copy = new HttpGet(request.getURI());
+                copy.setHeaders(request.getAllHeaders());
+                hedgeLeg(domain, copy, attempts, hedge, outstanding, result);
+            }
+        }, hedge.delayMillis());
+        return result;
+    }
+
+    private void hedgeLeg(String domain, HttpUriRequest request, AtomicInteger attempts,
+            final HedgePolicy hedge, final AtomicInteger outstanding,
+            final CompletableFuture<BufferedResponse> result) {
+        final long start = System.nanoTime();
+        CompletableFuture<BufferedResponse> leg = sendOnceAsync(domain, request, attempts);
+        // the loser is cancelled as soon as the result is known
+        result.whenComplete((response, error) -> leg.cancel(false));
+        leg.whenComplete((response, error) -> {
+            if (response != null) {
+                hedge.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                result.complete(response);
+            } else if (outstanding.decrementAndGet() == 0) {
+                result.completeExceptionally(unwrap(error));
+            }
+        });
+    }
+
+    private static boolean isHedgeable(HttpUriRequest request) {
+        return HttpGet.METHOD_NAME.equals(request.getMethod());
+    }
+
+    /**
+     * Waits for an async exchange on behalf of a blocking caller
+     */
+    private static BufferedResponse await(CompletableFuture<BufferedResponse> exchange)
+            throws IOException {
+        try {
+            return exchange.get();
+        } catch (InterruptedException e) {
+            exchange.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for a response");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Sends a GET whose body is read later, waiting for the throttle if one
+     * is set. The permit covers the request up to the response head only.
+     */
+    private CloseableHttpResponse openStream(String domain, HttpGet httpget)
+            throws IOException {
+        Throttle t = throttle;
+        if (t == null) {
+            return transport.execute(httpget, ensureCookieStore(domain));
+        }
+        acquire(t);
+        CloseableHttpResponse response;
+        try {
+            response = transport.execute(httpget, ensureCookieStore(domain));
+        } catch (IOException | RuntimeException ex) {
+            t.release(-1, null);
+            throw ex;
+        }
+        Header retryAfter = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+        t.release(response.getStatusLine().getStatusCode(),
+                retryAfter != null ? retryAfter.getValue() : null);
+        return response;
+    }
+
+    /**
+     * Waits for a session renewal without cancelling it, other callers may
+     * be waiting for it too
+     * @return false if the renewal failed
+     */
+    private static boolean awaitRenewal(CompletableFuture<Void> renewal)
+            throws InterruptedIOException {
+        try {
+            renewal.get();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while renewing the session");
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Sends a request once on the non-blocking client, waiting for the
+     * throttle if one is set
+     */
+    private CompletableFuture<BufferedResponse> sendOnceAsync(String domain,
+            HttpUriRequest request, AtomicInteger attempts) {
+        Throttle t = throttle;
+        if (t == null) {
+            count(attempts);
+            return transport.executeBufferedAsync(request, ensureCookieStore(domain));
+        }
+        CompletableFuture<BufferedResponse> result = new CompletableFuture<BufferedResponse>();
+        sendThrottled(domain, request, attempts, t, 0, result);
+        return result;
+    }
+
+    private void sendThrottled(final String domain, final HttpUriRequest request,
+            final AtomicInteger attempts, final Throttle t, final int attempt,
+            final CompletableFuture<BufferedResponse> result) {
+        CompletableFuture<Void> permit = t.acquireAsync();
+        cancelWith(result, permit);
+        permit.thenRun(() -> {
+            if (result.isDone()) {
+                t.abandon();
+                return;
+            }
+            count(attempts);
+            CompletableFuture<BufferedResponse> exchange =
+                    transport.executeBufferedAsync(request, ensureCookieStore(domain));
+            cancelWith(result, exchange);
+            exchange.whenComplete((response, error) -> {
+                if (response == null) {
+                    t.release(-1, null);
+                    result.completeExceptionally(unwrap(error));
+                    return;
+                }
+                t.release(response.getStatus(), response.getHeader(HttpHeaders.RETRY_AFTER));
+                if (resendThrottled(request, response, attempt)) {
+                    reset(request);
+                    sendThrottled(domain, request, attempts, t, attempt + 1, result);
+                } else {
+                    result.complete(response);
+                }
+            });
+        });
+    }
+
+    /**
+     * Decides whether a request the server pushed back on is sent again.
+     * A 429 means the request was refused before processing; a 503 is only
+     * resent for GET. The throttle has already paused for Retry-After.
+     */
+    private static boolean resendThrottled(HttpUriRequest request, BufferedResponse response,
+            int attempt) {
+        return attempt < MAX_THROTTLED_RESENDS
+                && isResentWhenThrottled(request, response.getStatus());
+    }
+
+    private static boolean isResentWhenThrottled(HttpUriRequest request, int status) {
+        return isRepeatable(request)
+                && (status == 429 || (status == HttpStatus.SC_SERVICE_UNAVAILABLE
+                        && HttpGet.METHOD_NAME.equals(request.getMethod())));
+    }
+
+    /**
+     * Tells the retry policy to leave a response alone that the throttle
+     * already resent, so a request is not resent by both layers
+     */
+    private long retryDelay(RetryPolicy policy, HttpUriRequest request, int status,
+            int attempt, long deadline) {
+        if (throttle != null && isResentWhenThrottled(request, status)) {
+            return -1;
+        }
+        return policy.delayAfter(request.getMethod(), status, attempt, deadline);
+    }
+
+    /**
+     * @return false if the request has a body that can only be sent once
+     */
+    private static boolean isRepeatable(HttpUriRequest request) {
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            return entity == null || entity.isRepeatable();
+        }
+        return true;
+    }
+
+    private static void recordOutcome(CircuitBreaker breaker, int status) {
+        if (RetryPolicy.isHostFailure(status)) {
+            breaker.onFailure();
+        } else {
+            breaker.onSuccess();
+        }
+    }
+
+    private static void acquire(Throttle t) throws InterruptedIOException {
+        try {
+            t.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while throttled");
+        }
+    }
+
+    private static void pause(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting to retry");
+        }
+    }
+
+    private static void reset(HttpUriRequest request) {
+        if (request instanceof HttpRequestBase) {
+            ((HttpRequestBase) request).reset();
+        }
+    }
+
+    private static void count(AtomicInteger attempts) {
+        if (attempts != null) {
+            attempts.incrementAndGet();
+        }
+    }
+
+    private static void cancelWith(CompletableFuture<?> result, final CompletableFuture<?> stage) {
+        result.whenComplete((value, error) -> {
+            if (error instanceof CancellationException) {
+                stage.cancel(false);
+            }
+        });
+    }
+
+    private static String bodyOrEmpty(BufferedResponse response) {
+        if (response.getStatus() == HttpStatus.SC_OK && response.getBody() != null) {
+            return response.getBody();
+        }
+        return "";
+    }
+
+    /**
+     * Streams the "objects" of a list call without loading the whole body
+     * @param domain
+     * @param path
+     * @param OX3Entity
+     * @param params query string, may be null
+     * @return iterator over the objects, close it if you stop early
+     * @throws IOException on a transport error or a non-200 response
+     */
+    public OX3ObjectIterator<JsonElement> streamOX3Api(String domain, String path,
+            String OX3Entity, String params) throws IOException {
+        return streamOX3Api(domain, path, OX3Entity, params, ObjectDecoder.JSON_ELEMENT);
+    }
+
+    /**
+     * Streams the "objects" of a list call, binding each one to the given type
+     * with the decoder registered in {@link DecoderRegistry#DEFAULT}
+     * @param domain
+     * @param path
+     * @param OX3Entity
+     * @param params query string, may be null
+     * @param type
+     * @return iterator over the objects, close it if you stop early
+     * @throws IOException on a transport error or a non-200 response
+     */
+    public <T> OX3ObjectIterator<T> streamOX3Api(String domain, String path,
+            String OX3Entity, String params, Type type) throws IOException {
+        return streamOX3Api(domain, path, OX3Entity, params,
+                DecoderRegistry.DEFAULT.<T>get(type));
+    }
+
+    /**
+     * Streams the "objects" of a list call through a custom decoder
+     * @param domain
+     * @param path
+     * @param OX3Entity
+     * @param params query string, may be null
+     * @param decoder
+     * @return iterator over the objects, close it if you stop early
+     * @throws IOException on a transport error or a non-200 response
+     */
+    public <T> OX3ObjectIterator<T> streamOX3Api(String domain, String path,
+            String OX3Entity, String params, ObjectDecoder<T> decoder)
+            throws IOException {
+        String request = domain + path + OX3Entity;
+        if (params != null && !params.isEmpty()) {
+            request += "?" + params;
+        }
+        HttpGet httpget = new HttpGet(request);
+        SessionGuard guard = sessionGuard;
+        long generation = guard != null ? guard.generation() : 0;
+        CloseableHttpResponse response = openStream(domain, httpget);
+        if (guard != null
+                && response.getStatusLine().getStatusCode() == HttpStatus.SC_UNAUTHORIZED) {
+            EntityUtils.consume(response.getEntity());
+            response.close();
+            if (!awaitRenewal(guard.renew(generation))) {
+                throw new IOException("RETURNCODE:" + HttpStatus.SC_UNAUTHORIZED);
+            }
+            reset(httpget);
+            response = openStream(domain, httpget);
+        }
+        try {
+            int status = response.getStatusLine().getStatusCode();
+            if (status != 200) {
+                EntityUtils.consume(response.getEntity());
+                response.close();
+                throw new IOException("RETURNCODE:" + status);
+            }
+            HttpEntity entity = response.getEntity();
+            ContentType contentType = ContentType.get(entity);
+            InputStreamReader in = new InputStreamReader(entity.getContent(),
+                    contentType != null && contentType.getCharset() != null
+                            ? contentType.getCharset() : Consts.UTF_8);
+            return new OX3ObjectIterator<T>(in, decoder, response);
+        } catch (IOException | RuntimeException ex) {
+            response.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Iterates over every object of a v2 list endpoint, page by page
+     * @param domain
+     * @param path
+     * @param OX3Entity
+     * @param params extra query string without limit/offset, may be null
+     * @param pageSize objects requested per page
+     * @param prefetch pages fetched ahead of the one being consumed
+     * @return cursor over all objects, close it if you stop early
+     */
+    public PagingCursor<JsonElement> paginateOX3Api(String domain, String path,
+            String OX3Entity, String params, int pageSize, int prefetch) {
+        return paginateOX3Api(domain, path, OX3Entity, params, pageSize, prefetch,
+                ObjectDecoder.JSON_ELEMENT);
+    }
+
+    /**
+     * Iterates over every object of a v2 list endpoint, page by page
+     * @param domain
+     * @param path
+     * @param OX3Entity
+     * @param params extra query string without limit/offset, may be null
+     * @param pageSize objects requested per page
+     * @param prefetch pages fetched ahead of the one being consumed
+     * @param decoder
+     * @return cursor over all objects, close it if you stop early
+     */
+    public <T> PagingCursor<T> paginateOX3Api(String domain, String path,
+            String OX3Entity, String params, int pageSize, int prefetch,
+            ObjectDecoder<T> decoder) {
+        return new PagingCursor<T>(pageSource(domain, path, OX3Entity, params),
+                decoder, pageSize, prefetch);
+    }
+
+    /**
+     * Crawls a whole v2 list endpoint with several pages in flight. Once the
+     * first page has reported total_count, the remaining pages are fetched
+     * concurrently.
+     * @param domain
+     * @param path
+     * @param OX3Entity
+     * @param params extra query string without limit/offset, may be null
+     * @param pageSize objects requested per page
+     * @param parallelism maximum number of page requests in flight
+     * @param ordered deliver pages in offset order rather than as they arrive
+     * @param decoder
+     * @param consumer receives every page on the calling thread
+     * @return number of objects delivered
+     * @throws IOException if a page could not be fetched
+     * @throws InterruptedException
+     */
+    public <T> long crawlOX3Api(String domain, String path, String OX3Entity,
+            String params, int pageSize, int parallelism, boolean ordered,
+            ObjectDecoder<T> decoder, PageConsumer<T> consumer)
+            throws IOException, InterruptedException {
+        return new ParallelCrawler<T>(pageSource(domain, path, OX3Entity, params),
+                decoder, pageSize, parallelism).crawl(consumer, ordered);
+    }
+
+    /**
+     * Creates a page source for a list endpoint on the non-blocking client
+     * @param domain
+     * @param path
+     * @param OX3Entity
+     * @param params extra query string without limit/offset, may be null
+     * @return PageSource
+     */
+    protected PageSource pageSource(final String domain, String path, String OX3Entity,
+            String params) {
+        final String base = domain + path + OX3Entity + "?"
+                + (params != null && !params.isEmpty() ? params + "&" : "");
+        return (offset, limit) -> getAsync(domain,
+                base + "limit=" + limit + "&offset=" + offset, true);
+    }
+
     /**
      * Getter for the cookieStore
      * @return cookieStore
@@ -314,80 +1142,477 @@ public class Helper {
      */
     public String postAPICall(String domain, String path, String jsonString)
             throws IOException {
-        DefaultHttpClient httpclient = openxHttpClientFactory();
-
-        if (cookieStore == null) {
-            createCookieStore(domain, token);
-        }
-
-        httpclient.setCookieStore(cookieStore);
         HttpPost httppost = new HttpPost(domain + path);
         StringEntity requestEntity = new StringEntity(jsonString);
         requestEntity.setContentType(new BasicHeader(HTTP.CONTENT_TYPE,
                 "application/json"));
         httppost.setEntity(requestEntity);
-        HttpResponse response = httpclient.execute(httppost);
+        BufferedResponse response;
+        try {
+            response = exchange(domain, httppost);
+        } finally {
+            invalidateCache(domain + path);
+        }
+        if (response.getStatus() == HttpStatus.SC_OK) {
+            return response.getBody();
+        }
+        throw new IOException("RETURNCODE:" + response.getStatus());
+    }
 
-        String result = null;
-        if (response.getStatusLine().getStatusCode() == 200) {
-            result = EntityUtils.toString(response.getEntity());
-        } else {
-            throw new IOException("RETURNCODE:"
-                    + response.getStatusLine().getStatusCode());
+    /**
+     * Renews the session when the API answers 401 and sends the rejected
+     * call again. Concurrent calls rejected by the same session wait for a
+     * single renewal. Client.OX3OAuth sets a guard that logs in again.
+     * @param sessionGuard the guard, or null to return 401 responses as is
+     */
+    public void setSessionGuard(SessionGuard sessionGuard) {
+        this.sessionGuard = sessionGuard;
+    }
+
+    /**
+     * Gets the session guard
+     * @return SessionGuard, null if sessions are not renewed
+     */
+    public SessionGuard getSessionGuard() {
+        return sessionGuard;
+    }
+
+    /**
+     * Sends a second identical GET when a response is slower than the
+     * policy's percentile; the first response wins. Hedged calls use the
+     * non-blocking client, also when called from the blocking methods.
+     * Off by default.
+     * @param hedgePolicy the policy, or null to disable hedging
+     */
+    public void setHedgePolicy(HedgePolicy hedgePolicy) {
+        this.hedgePolicy = hedgePolicy;
+    }
+
+    /**
+     * Gets the hedge policy
+     * @return the policy, or null if hedging is disabled
+     */
+    public HedgePolicy getHedgePolicy() {
+        return hedgePolicy;
+    }
+
+    /**
+     * Retries calls that fail with an I/O error or a 5xx/429 response, as
+     * far as the policy allows. Off by default.
+     * @param retryPolicy the policy, may be shared between helpers, or null
+     * to disable retries
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Gets the retry policy
+     * @return the policy, or null if retries are disabled
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Throttles every call made through this helper. Calls wait for the
+     * throttle's rate and concurrency limit; 429 and 503 responses make it
+     * back off for the Retry-After period and are sent again up to three
+     * times. Off by default.
+     * @param throttle the throttle, may be shared between helpers, or null
+     * to disable throttling
+     */
+    public void setThrottle(Throttle throttle) {
+        this.throttle = throttle;
+    }
+
+    /**
+     * Gets the throttle
+     * @return the throttle, or null if throttling is disabled
+     */
+    public Throttle getThrottle() {
+        return throttle;
+    }
+
+    /**
+     * Make post api call with a streamed body, see {@link RequestBodies}
+     *
+     * @param domain
+     * @param path
+     * @param body
+     * @return results from the API
+     * @throws IOException on a transport error or a non-2xx response
+     */
+    public String postAPICall(String domain, String path, HttpEntity body)
+            throws IOException {
+        HttpPost httppost = new HttpPost(domain + path);
+        httppost.setEntity(body);
+        return sendAPICall(domain, httppost);
+    }
+
+    /**
+     * Make put api call using a json string
+     *
+     * @param domain
+     * @param path
+     * @param jsonString
+     * @return results from the API
+     * @throws IOException on a transport error or a non-2xx response
+     */
+    public String putAPICall(String domain, String path, String jsonString)
+            throws IOException {
+        return putAPICall(domain, path, RequestBodies.json(jsonString));
+    }
+
+    /**
+     * Make put api call with a streamed body, see {@link RequestBodies}
+     *
+     * @param domain
+     * @param path
+     * @param body
+     * @return results from the API
+     * @throws IOException on a transport error or a non-2xx response
+     */
+    public String putAPICall(String domain, String path, HttpEntity body)
+            throws IOException {
+        HttpPut httpput = new HttpPut(domain + path);
+        httpput.setEntity(body);
+        return sendAPICall(domain, httpput);
+    }
+
+    /**
+     * Make patch api call using a json string
+     *
+     * @param domain
+     * @param path
+     * @param jsonString
+     * @return results from the API
+     * @throws IOException on a transport error or a non-2xx response
+     */
+    public String patchAPICall(String domain, String path, String jsonString)
+            throws IOException {
+        return patchAPICall(domain, path, RequestBodies.json(jsonString));
+    }
+
+    /**
+     * Make patch api call with a streamed body, see {@link RequestBodies}
+     *
+     * @param domain
+     * @param path
+     * @param body
+     * @return results from the API
+     * @throws IOException on a transport error or a non-2xx response
+     */
+    public String patchAPICall(String domain, String path, HttpEntity body)
+            throws IOException {
+        HttpPatch httppatch = new HttpPatch(domain + path);
+        httppatch.setEntity(body);
+        return sendAPICall(domain, httppatch);
+    }
+
+    /**
+     * Make delete api call
+     *
+     * @param domain
+     * @param path
+     * @return results from the API, "" if there was no body
+     * @throws IOException on a transport error or a non-2xx response
+     */
+    public String deleteAPICall(String domain, String path) throws IOException {
+        return sendAPICall(domain, new HttpDelete(domain + path));
+    }
+
+    /**
+     * Sends a write request and drops cached responses of the entity type
+     * it touches
+     * @param domain
+     * @param request
+     * @return the response body, "" if there was none
+     * @throws IOException on a transport error or a non-2xx response
+     */
+    protected String sendAPICall(String domain, HttpUriRequest request) throws IOException {
+        BufferedResponse response;
+        try {
+            response = exchange(domain, request);
+        } finally {
+            invalidateCache(request.getURI().toString());
         }
-        return result;
+        if (response.getStatus() / 100 == 2) {
+            return response.getBody() != null ? response.getBody() : "";
+        }
+        throw new IOException("RETURNCODE:" + response.getStatus());
+    }
+
+    /**
+     * Lets concurrent identical GET calls within the session share one
+     * request. Off by default.
+     * @param enabled
+     */
+    public void setRequestCoalescing(boolean enabled) {
+        this.requestCoalescer = enabled ? new RequestCoalescer<BufferedResponse>() : null;
+    }
+
+    /**
+     * Gets the request coalescer
+     * @return the coalescer, or null if coalescing is disabled
+     */
+    public RequestCoalescer<BufferedResponse> getRequestCoalescer() {
+        return requestCoalescer;
+    }
+
+    /**
+     * Uses a response cache for GET calls made through makeAPICall.
+     * Entries are kept per session; writes through this helper invalidate
+     * the cached responses of the entity type they touch.
+     * @param responseCache the cache, or null to disable caching
+     */
+    public void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
     }
 
-    private DefaultHttpClient openxHttpClientFactory() {
-        DefaultHttpClient httpclient = new DefaultHttpClient();
-        if (proxy != null) {
-            httpclient.getParams().setParameter(ConnRoutePNames.DEFAULT_PROXY, proxy);
+    /**
+     * Gets the response cache
+     * @return the cache, or null if caching is disabled
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Drops cached responses of the entity type a request touches
+     * @param request
+     */
+    protected void invalidateCache(String request) {
+        ResponseCache cache = responseCache;
+        if (cache != null) {
+            cache.invalidate(entityType(request));
+        }
+    }
+
+    /**
+     * Extracts the entity type from a request url, e.g. "account" from
+     * http://host/ox/4.0/account/5?x=y
+     * @param request
+     * @return the entity type
+     */
+    protected static String entityType(String request) {
+        String path = request;
+        int scheme = path.indexOf("://");
+        if (scheme >= 0) {
+            int slash = path.indexOf('/', scheme + 3);
+            path = slash >= 0 ? path.substring(slash) : "/";
+        }
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        for (String apiPath : Client.OK_API_PATHS) {
+            if (path.startsWith(apiPath)) {
+                path = path.substring(apiPath.length());
+                break;
+            }
         }
-        if (ignoreSslCertificate) {
-            logger.info("disable ssl certificate check");
-            ignoreSslCertificate(httpclient);
+        while (path.startsWith("/")) {
+            path = path.substring(1);
         }
-        OpenXRedirectStrategy dsr = new OpenXRedirectStrategy();
-        httpclient.setRedirectStrategy(dsr);
-        return httpclient;
+        int slash = path.indexOf('/');
+        return slash >= 0 ? path.substring(0, slash) : path;
     }
 
     /**
-     * apache httpclient use https proxy: peer not authenticated
+     * Calls the OX3 API to get a list of objects without blocking
+     * @param domain
+     * @param path
+     * @param OX3Entity
+     * @return future completed with the results from the API
      */
-    private void ignoreSslCertificate(DefaultHttpClient httpclient) {
-        try {
-            SSLSocketFactory sslsf = new SSLSocketFactory(new TrustStrategy() {
+    public CompletableFuture<String> callOX3ApiAsync(String domain, String path,
+            String OX3Entity) {
+        String request = domain + path + OX3Entity;
+        return makeAPICallAsync(domain, request);
+    }
 
-                @Override
-                public boolean isTrusted(X509Certificate[] chain, String authType) throws CertificateException {
-                    return true;
-                }
-            }, new X509HostnameVerifier(){
+    /**
+     * Calls the OX3 API to get a list of objects with extra params without blocking
+     * @param domain
+     * @param path
+     * @param OX3Entity
+     * @param params
+     * @return future completed with the results from the API
+     */
+    public CompletableFuture<String> callOX3ApiAsync(String domain, String path,
+            String OX3Entity, String params) {
+        String request = domain + path + OX3Entity + "?" + params;
+        return makeAPICallAsync(domain, request);
+    }
 
-                @Override
-                public boolean verify(String hostname, SSLSession session) {
-                    return true;
-                }
+    /**
+     * Calls the OX3 API with an object by an id without blocking
+     * @param domain
+     * @param path
+     * @param OX3Entity
+     * @param id
+     * @return future completed with the results from the API
+     */
+    public CompletableFuture<String> callOX3ApiAsync(String domain, String path,
+            String OX3Entity, int id) {
+        String request = domain + path + OX3Entity + "/" + id;
+        return makeAPICallAsync(domain, request);
+    }
 
-                @Override
-                public void verify(String host, SSLSocket ssl) throws IOException {
-                    // do nothing
-                }
+    /**
+     * Makes the actual API call on the non-blocking client.
+     * Like {@link #makeAPICall(String, String)} a non-200 response yields "".
+     * @param domain
+     * @param request
+     * @return future completed with the results from the API
+     */
+    protected CompletableFuture<String> makeAPICallAsync(String domain, String request) {
+        return getAsync(domain, request, false);
+    }
 
-                @Override
-                public void verify(String host, X509Certificate cert) throws SSLException {
-                    // do nothing
-                }
+    /**
+     * Fetches many objects by id concurrently, with at most maxInFlight
+     * requests outstanding at any time. Every id gets its own result, so a
+     * failing id (including a non-200 response) does not affect the others.
+     * @param domain
+     * @param path
+     * @param OX3Entity
+     * @param ids duplicate ids are only fetched once
+     * @param maxInFlight
+     * @return results keyed by id, in the order the ids were given
+     * @throws InterruptedException if interrupted while waiting for a slot
+     */
+    public Map<Integer, ApiResult> callOX3ApiBulk(String domain, String path,
+            String OX3Entity, Collection<Integer> ids, int maxInFlight)
+            throws InterruptedException {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        final Semaphore permits = new Semaphore(maxInFlight);
+        Map<Integer, CompletableFuture<ApiResult>> pending =
+                new LinkedHashMap<Integer, CompletableFuture<ApiResult>>();
+        for (Integer id : ids) {
+            if (pending.containsKey(id)) {
+                continue;
+            }
+            permits.acquire();
+            final AtomicInteger attempts = new AtomicInteger();
+            CompletableFuture<String> call;
+            try {
+                call = getAsync(domain, domain + path + OX3Entity + "/" + id, true, attempts);
+            } catch (RuntimeException ex) {
+                permits.release();
+                throw ex;
+            }
+            pending.put(id, call.handle((body, error) -> {
+                permits.release();
+                return error == null ? ApiResult.success(body, attempts.get())
+                        : ApiResult.failure(unwrap(error), attempts.get());
+            }));
+        }
 
-                @Override
-                public void verify(String host, String[] cns, String[] subjectAlts) throws SSLException {
-                    // do nothing
-                }
-            });
-            httpclient.getConnectionManager().getSchemeRegistry().register(new Scheme("https", 443, sslsf));
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        Map<Integer, ApiResult> results = new LinkedHashMap<Integer, ApiResult>();
+        for (Map.Entry<Integer, CompletableFuture<ApiResult>> entry : pending.entrySet()) {
+            results.put(entry.getKey(), entry.getValue().join());
         }
+        return results;
+    }
+
+    /**
+     * Sends a GET on the non-blocking client
+     * @param domain
+     * @param request
+     * @param failOnError fail with an IOException on a non-200 instead of ""
+     * @return future completed with the body
+     */
+    protected CompletableFuture<String> getAsync(String domain, String request,
+            boolean failOnError) {
+        return getAsync(domain, request, failOnError, null);
+    }
+
+    /**
+     * Sends a GET on the non-blocking client
+     * @param domain
+     * @param request
+     * @param failOnError fail with an IOException on a non-200 instead of ""
+     * @param attempts counts the attempts made, may be null; stays 0 if
+     * the call shared the request of a concurrent identical call
+     * @return future completed with the body
+     */
+    protected CompletableFuture<String> getAsync(final String domain, final String request,
+            final boolean failOnError, final AtomicInteger attempts) {
+        RequestCoalescer<BufferedResponse> coalescer = requestCoalescer;
+        CompletableFuture<BufferedResponse> response;
+        if (coalescer == null) {
+            response = exchangeAsync(domain, new HttpGet(request), attempts);
+        } else {
+            ensureCookieStore(domain);
+            response = coalescer.executeAsync(sessionKey(request),
+                    () -> exchangeAsync(domain, new HttpGet(request), attempts));
+        }
+        return response.thenApply(buffered -> readBody(buffered, failOnError));
+    }
+
+    /**
+     * Make post api call using a json string without blocking.
+     * A non-200 response completes the future with an IOException.
+     *
+     * @param domain
+     * @param path
+     * @param jsonString
+     * @return future completed with the results from the API
+     */
+    public CompletableFuture<String> postAPICallAsync(String domain, String path,
+            String jsonString) {
+        HttpPost httppost = new HttpPost(domain + path);
+        try {
+            StringEntity requestEntity = new StringEntity(jsonString);
+            requestEntity.setContentType(new BasicHeader(HTTP.CONTENT_TYPE,
+                    "application/json"));
+            httppost.setEntity(requestEntity);
+        } catch (UnsupportedEncodingException ex) {
+            CompletableFuture<String> failed = new CompletableFuture<String>();
+            failed.completeExceptionally(ex);
+            return failed;
+        }
+        final String request = domain + path;
+        return exchangeAsync(domain, httppost)
+                .whenComplete((response, error) -> invalidateCache(request))
+                .thenApply(response -> readBody(response, true));
+    }
+
+    /**
+     * Gets the body of an async response
+     * @param response
+     * @param failOnError throw on a non-200 status instead of returning ""
+     * @return the body
+     */
+    private static String readBody(BufferedResponse response, boolean failOnError) {
+        if (response.getStatus() != HttpStatus.SC_OK && failOnError) {
+            throw new CompletionException(new IOException("RETURNCODE:"
+                    + response.getStatus()));
+        }
+        return bodyOrEmpty(response);
+    }
+
+    /**
+     * Strips the CompletionException wrapper added by CompletableFuture
+     * @param error
+     * @return the underlying cause
+     */
+    protected static Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * Gets the transport used by this helper
+     * @return OpenXHttpTransport
+     */
+    public OpenXHttpTransport getTransport() {
+        return transport;
     }
 }
@@ -0,0 +1,298 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import com.openx.oauth.builder.OpenXTransportBuilder;
+import com.openx.oauth.session.SessionStore;
+import com.openx.oauth.throttle.Throttle;
+import com.openx.oauth.transport.OpenXHttpTransport;
+
+/**
+ * Logged-in sessions of many tenants, e.g. publisher accounts with their
+ * own API keys and SSO users, sharing one pooled transport.
+ *
+ * Each tenant gets its own Client, created on first use by the factory and
+ * logged in with OX3OAuth, so cookies and tokens never mix. Optionally each
+ * tenant gets its own Throttle, and sessions unused for a while are
+ * dropped; the next call for that tenant logs in again (or resumes a
+ * stored session, see {@link #sessionStore}). A tenant counts as used when
+ * {@link #getHelper} is called for it, and is never evicted while it is
+ * logging in.
+ *
+ * All tenants send through the pool's transport, so proxy and SSL settings
+ * given to a tenant's Client are ignored; configure them on the transport.
+ */
+public class SessionPool implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(SessionPool.class.getName());
+
+    private static final ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "openx-session-pool");
+                t.setDaemon(true);
+                return t;
+            });
+
+    private final OpenXHttpTransport transport;
+    private final boolean ownsTransport;
+    private final Function<String, Client> clients;
+    private final Map<String, Tenant> tenants = new ConcurrentHashMap<String, Tenant>();
+    private volatile Supplier<Throttle> throttles;
+    private volatile SessionStore sessionStore;
+    private ScheduledFuture<?> evictor;
+
+    /**
+     * Object Constructor, creates a pooled transport that is closed by
+     * {@link #close()}
+     * @param clients creates the (not yet logged in) client of a tenant
+     */
+    public SessionPool(Function<String, Client> clients) {
+        this(new OpenXTransportBuilder().build(), true, clients);
+    }
+
+    /**
+     * Object Constructor
+     *
+     * The transport is shared and is not closed by {@link #close()}.
+     * @param transport
+     * @param clients creates the (not yet logged in) client of a tenant
+     */
+    public SessionPool(OpenXHttpTransport transport, Function<String, Client> clients) {
+        this(transport, false, clients);
+    }
+
+    private SessionPool(OpenXHttpTransport transport, boolean ownsTransport,
+            Function<String, Client> clients) {
+        this.transport = transport;
+        this.ownsTransport = ownsTransport;
+        this.clients = clients;
+    }
+
+    /**
+     * Gives every tenant its own throttle
+     * @param requestsPerSecond sustained request rate per tenant
+     * @param burst requests a tenant may send at once after an idle period
+     * @param maxConcurrency calls a tenant may have in flight
+     * @return this
+     */
+    public SessionPool tenantThrottle(final double requestsPerSecond, final int burst,
+            final int maxConcurrency) {
+        return tenantThrottle(() -> new Throttle(requestsPerSecond, burst, maxConcurrency,
+                maxConcurrency));
+    }
+
+    /**
+     * Gives every tenant its own throttle
+     * @param throttles creates the throttle of a tenant, null for none
+     * @return this
+     */
+    public SessionPool tenantThrottle(Supplier<Throttle> throttles) {
+        this.throttles = throttles;
+        return this;
+    }
+
+    /**
+     * Stores the tenants' sessions, so evicted tenants and restarted
+     * processes resume them instead of logging in
+     * @param sessionStore
+     * @return this
+     */
+    public SessionPool sessionStore(SessionStore sessionStore) {
+        this.sessionStore = sessionStore;
+        return this;
+    }
+
+    /**
+     * Drops sessions that were not used for the given time
+     * @param idle
+     * @param unit
+     * @return this
+     */
+    public synchronized SessionPool evictIdle(long idle, TimeUnit unit) {
+        if (idle <= 0) {
+            throw new IllegalArgumentException("idle must be positive");
+        }
+        if (evictor != null) {
+            evictor.cancel(false);
+        }
+        final long idleNanos = unit.toNanos(idle);
+        long period = Math.max(1, unit.toMillis(idle) / 4);
+        evictor = timer.scheduleWithFixedDelay(() -> evictIdle(idleNanos), period, period,
+                TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    /**
+     * Returns the logged-in helper of a tenant, logging in on first use.
+     * Concurrent callers for the same tenant share one login.
+     * @param tenant
+     * @return Helper
+     * @throws Exception if the login failed
+     */
+    public Helper getHelper(String tenant) throws Exception {
+        while (true) {
+            Helper helper = tenants.computeIfAbsent(tenant, Tenant::new).helper();
+            if (helper != null) {
+                return helper;
+            }
+            // evicted between lookup and login, the next lookup creates a new one
+        }
+    }
+
+    /**
+     * Logs a tenant out of the pool
+     * @param tenant
+     */
+    public void evict(String tenant) {
+        Tenant entry = tenants.get(tenant);
+        if (entry != null) {
+            // any idle time is long enough
+            entry.evict(-1);
+        }
+    }
+
+    /**
+     * @return number of tenants with a session
+     */
+    public int size() {
+        return tenants.size();
+    }
+
+    /**
+     * @return the shared transport
+     */
+    public OpenXHttpTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Drops every session and closes the transport if the pool created it
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (evictor != null) {
+                evictor.cancel(false);
+                evictor = null;
+            }
+        }
+        for (String tenant : tenants.keySet()) {
+            evict(tenant);
+        }
+        if (ownsTransport) {
+            transport.close();
+        }
+    }
+
+    private void evictIdle(long idleNanos) {
+        Iterator<Tenant> it = tenants.values().iterator();
+        while (it.hasNext()) {
+            Tenant tenant = it.next();
+            // a tenant logging in is in use; skip it rather than wait for its lock
+            if (!tenant.loggingIn && tenant.evict(idleNanos)) {
+                logger.fine("Evicted idle session of " + tenant.name);
+            }
+        }
+    }
+
+    /**
+     * Session of one tenant
+     */
+    private final class Tenant {
+
+        private final String name;
+        private volatile long lastUsed = System.nanoTime();
+        private volatile boolean loggingIn;
+        private Client client;
+        private boolean evicted;
+
+        private Tenant(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return the helper, or null if the tenant was evicted meanwhile
+         */
+        private synchronized Helper helper() throws Exception {
+            if (evicted) {
+                return null;
+            }
+            lastUsed = System.nanoTime();
+            if (client == null) {
+                loggingIn = true;
+                try {
+                    client = logIn();
+                } finally {
+                    loggingIn = false;
+                    lastUsed = System.nanoTime();
+                }
+            }
+            return client.getHelper();
+        }
+
+        private Client logIn() throws Exception {
+            Client created = clients.apply(name);
+            if (created == null) {
+                throw new IllegalArgumentException("unknown tenant: " + name);
+            }
+            created.setTransport(transport);
+            created.setSessionStore(sessionStore);
+            created.OX3OAuth();
+            Supplier<Throttle> factory = throttles;
+            if (factory != null) {
+                created.getHelper().setThrottle(factory.get());
+            }
+            return created;
+        }
+
+        /**
+         * Removes the tenant from the pool and logs it out if it was not
+         * used for the given time
+         * @param idleNanos
+         * @return true if evicted
+         */
+        private synchronized boolean evict(long idleNanos) {
+            if (evicted || System.nanoTime() - lastUsed <= idleNanos) {
+                return false;
+            }
+            evicted = true;
+            tenants.remove(name, this);
+            close();
+            return true;
+        }
+
+        private void close() {
+            if (client != null) {
+                try {
+                    client.close();
+                } catch (IOException e) {
+                    logger.warning("Could not close client of " + name + ": " + e);
+                }
+                client = null;
+            }
+        }
+    }
+}
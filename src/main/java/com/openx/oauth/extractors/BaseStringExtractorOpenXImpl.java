@@ -0,0 +1,187 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.extractors;
+
+import com.openx.oauth.request.OAuthParameters;
+import java.util.Arrays;
+import java.util.Map;
+import org.scribe.exceptions.OAuthParametersMissingException;
+import org.scribe.extractors.BaseStringExtractor;
+import org.scribe.model.OAuthRequest;
+import org.scribe.utils.Preconditions;
+
+/**
+ * Builds the OAuth signature base string exactly like scribe's
+ * BaseStringExtractorImpl: query, body and OAuth parameters are
+ * percent-encoded, sorted by encoded name (later sources win on equal
+ * names) and joined, then verb, URL and parameters are encoded again.
+ *
+ * The encoded parameters are written once into a per-thread buffer and
+ * sorted as offsets into it, so no intermediate maps or Strings are made.
+ * Instances are thread-safe.
+ */
+public class BaseStringExtractorOpenXImpl implements BaseStringExtractor {
+
+    private static final int MAX_KEPT_CAPACITY = 8192;
+
+    private final ThreadLocal<Buffers> buffers = new ThreadLocal<Buffers>() {
+        @Override
+        protected Buffers initialValue() {
+            return new Buffers();
+        }
+    };
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String extract(OAuthRequest request) {
+        checkPreconditions(request);
+        Buffers b = buffers.get();
+        b.reset();
+        addAll(b, request.getQueryStringParams());
+        addAll(b, request.getBodyParams());
+        addAll(b, request.getOauthParameters());
+        b.sort();
+
+        StringBuilder out = b.out;
+        PercentEncoding.append(out, request.getVerb().name());
+        out.append('&');
+        PercentEncoding.append(out, request.getSanitizedUrl());
+        out.append('&');
+        boolean first = true;
+        for (int i = 0; i < b.count; i++) {
+            int p = b.order[i];
+            if (b.isShadowed(i)) {
+                continue;
+            }
+            if (!first) {
+                out.append("%26");
+            }
+            first = false;
+            // the encoded name and value contain no '&' or '='
+            PercentEncoding.append(out, b.encoded, b.keyStart[p], b.keyEnd[p]);
+            out.append("%3D");
+            PercentEncoding.append(out, b.encoded, b.keyEnd[p], b.valueEnd[p]);
+        }
+        String result = out.toString();
+        if (out.capacity() > MAX_KEPT_CAPACITY || b.encoded.capacity() > MAX_KEPT_CAPACITY) {
+            buffers.remove();
+        }
+        return result;
+    }
+
+    private static void addAll(Buffers b, Map<String, String> parameters) {
+        if (parameters == null || parameters.isEmpty()) {
+            return;
+        }
+        if (parameters instanceof OAuthParameters) {
+            OAuthParameters sorted = (OAuthParameters) parameters;
+            for (int i = 0; i < sorted.size(); i++) {
+                b.add(sorted.keyAt(i), sorted.valueAt(i));
+            }
+        } else {
+            for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+                b.add(parameter.getKey(), parameter.getValue());
+            }
+        }
+    }
+
+    /**
+     * Check the conditions before processing the request
+     * @param request
+     */
+    protected void checkPreconditions(OAuthRequest request) {
+        Preconditions.checkNotNull(request, "Cannot extract base string from null object");
+
+        if (request.getOauthParameters() == null || request.getOauthParameters().size() <= 0) {
+            throw new OAuthParametersMissingException(request);
+        }
+    }
+
+    /**
+     * Per-thread buffers. Parameter p is encoded[keyStart[p], keyEnd[p]) =
+     * encoded[keyEnd[p], valueEnd[p]); order holds the parameters sorted by
+     * encoded name, equal names in the order they were added.
+     */
+    private static final class Buffers {
+
+        private final StringBuilder encoded = new StringBuilder(512);
+        private final StringBuilder out = new StringBuilder(1024);
+        private int[] keyStart = new int[16];
+        private int[] keyEnd = new int[16];
+        private int[] valueEnd = new int[16];
+        private int[] order = new int[16];
+        private int count;
+
+        private void reset() {
+            encoded.setLength(0);
+            out.setLength(0);
+            count = 0;
+        }
+
+        private void add(String key, String value) {
+            if (count == order.length) {
+                int capacity = count * 2;
+                keyStart = Arrays.copyOf(keyStart, capacity);
+                keyEnd = Arrays.copyOf(keyEnd, capacity);
+                valueEnd = Arrays.copyOf(valueEnd, capacity);
+                order = Arrays.copyOf(order, capacity);
+            }
+            keyStart[count] = encoded.length();
+            PercentEncoding.append(encoded, key);
+            keyEnd[count] = encoded.length();
+            PercentEncoding.append(encoded, value);
+            valueEnd[count] = encoded.length();
+            order[count] = count;
+            count++;
+        }
+
+        /**
+         * Stable insertion sort, there are only a handful of parameters
+         */
+        private void sort() {
+            for (int i = 1; i < count; i++) {
+                int p = order[i];
+                int j = i - 1;
+                while (j >= 0 && compareKeys(order[j], p) > 0) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = p;
+            }
+        }
+
+        /**
+         * @return true if a later parameter with the same name replaces the
+         * i-th one in sort order
+         */
+        private boolean isShadowed(int i) {
+            return i + 1 < count && compareKeys(order[i], order[i + 1]) == 0;
+        }
+
+        private int compareKeys(int a, int b) {
+            int aStart = keyStart[a];
+            int bStart = keyStart[b];
+            int aLength = keyEnd[a] - aStart;
+            int bLength = keyEnd[b] - bStart;
+            int length = Math.min(aLength, bLength);
+            for (int k = 0; k < length; k++) {
+                int diff = encoded.charAt(aStart + k) - encoded.charAt(bStart + k);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return aLength - bLength;
+        }
+    }
+}
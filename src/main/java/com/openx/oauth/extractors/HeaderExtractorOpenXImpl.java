@@ -11,21 +11,33 @@
  *======================================================================*/
 package com.openx.oauth.extractors;
 
+import com.openx.oauth.request.OAuthParameters;
 import java.util.Map;
 import org.scribe.exceptions.OAuthParametersMissingException;
 import org.scribe.extractors.HeaderExtractor;
 import org.scribe.model.OAuthRequest;
 import org.scribe.utils.Preconditions;
-import org.scribe.utils.URLUtils;
 
 /**
  * Header Extractor class
+ *
+ * Builds the header in a per-thread buffer, so that apart from the
+ * returned String it allocates nothing for an OpenXRequest. Instances are
+ * thread-safe.
  * @author keithmiller
  */
 public class HeaderExtractorOpenXImpl implements HeaderExtractor {
 
     private static final String PARAM_SEPARATOR = ", ";
     private static final String PREAMBLE = "OAuth ";
+    private static final int MAX_KEPT_CAPACITY = 8192;
+
+    private final ThreadLocal<StringBuilder> buffers = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(512);
+        }
+    };
 
     /**
      * {@inheritDoc}
@@ -34,14 +46,32 @@ public class HeaderExtractorOpenXImpl implements HeaderExtractor {
     public String extract(OAuthRequest request) {
         checkPreconditions(request);
         Map<String, String> parameters = request.getOauthParameters();
-        StringBuilder header = new StringBuilder(parameters.size() * 20);
-        for (String key : parameters.keySet()) {
-            if (header.length() > PREAMBLE.length()) {
-                header.append(PARAM_SEPARATOR);
+        StringBuilder header = buffers.get();
+        header.setLength(0);
+        if (parameters instanceof OAuthParameters) {
+            OAuthParameters sorted = (OAuthParameters) parameters;
+            for (int i = 0; i < sorted.size(); i++) {
+                appendParameter(header, sorted.keyAt(i), sorted.valueAt(i));
             }
-            header.append(String.format("%s=\"%s\"", key, URLUtils.percentEncode(parameters.get(key))));
+        } else {
+            for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+                appendParameter(header, parameter.getKey(), parameter.getValue());
+            }
+        }
+        String result = header.toString();
+        if (header.capacity() > MAX_KEPT_CAPACITY) {
+            buffers.remove();
+        }
+        return result;
+    }
+
+    private static void appendParameter(StringBuilder header, String key, String value) {
+        if (header.length() > PREAMBLE.length()) {
+            header.append(PARAM_SEPARATOR);
         }
-        return header.toString();
+        header.append(key).append("=\"");
+        PercentEncoding.append(header, value);
+        header.append('"');
     }
 
     /**
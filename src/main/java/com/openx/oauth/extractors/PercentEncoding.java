@@ -0,0 +1,92 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.extractors;
+
+/**
+ * RFC 3986 percent-encoding as required by OAuth 1.0, producing the same
+ * output as scribe's URLUtils.percentEncode but appending straight to a
+ * StringBuilder through a lookup table instead of regular expressions
+ */
+final class PercentEncoding {
+
+    private static final boolean[] UNRESERVED = new boolean[128];
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    static {
+        for (char c = 'A'; c <= 'Z'; c++) {
+            UNRESERVED[c] = true;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            UNRESERVED[c] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            UNRESERVED[c] = true;
+        }
+        UNRESERVED['-'] = true;
+        UNRESERVED['.'] = true;
+        UNRESERVED['_'] = true;
+        UNRESERVED['~'] = true;
+    }
+
+    private PercentEncoding() {
+    }
+
+    /**
+     * Appends the encoded value
+     * @param out
+     * @param value
+     */
+    static void append(StringBuilder out, CharSequence value) {
+        append(out, value, 0, value.length());
+    }
+
+    /**
+     * Appends the encoded characters start (inclusive) to end (exclusive)
+     * @param out
+     * @param value
+     * @param start
+     * @param end
+     */
+    static void append(StringBuilder out, CharSequence value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (UNRESERVED[c]) {
+                    out.append(c);
+                } else {
+                    appendByte(out, c);
+                }
+            } else if (c < 0x800) {
+                appendByte(out, 0xc0 | (c >> 6));
+                appendByte(out, 0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < end
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                appendByte(out, 0xf0 | (codePoint >> 18));
+                appendByte(out, 0x80 | ((codePoint >> 12) & 0x3f));
+                appendByte(out, 0x80 | ((codePoint >> 6) & 0x3f));
+                appendByte(out, 0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogates become '?', as with String.getBytes
+                appendByte(out, '?');
+            } else {
+                appendByte(out, 0xe0 | (c >> 12));
+                appendByte(out, 0x80 | ((c >> 6) & 0x3f));
+                appendByte(out, 0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    private static void appendByte(StringBuilder out, int b) {
+        out.append('%').append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+    }
+}
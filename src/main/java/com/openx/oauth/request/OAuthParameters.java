@@ -0,0 +1,180 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.request;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The handful of OAuth parameters of a request, kept sorted by name in two
+ * small arrays. Extractors read them by index with {@link #keyAt} and
+ * {@link #valueAt}, which allocates nothing; the Map view is for callers
+ * that expect scribe's parameter map.
+ *
+ * Not thread-safe, like the request it belongs to.
+ */
+public class OAuthParameters extends AbstractMap<String, String> {
+
+    private String[] keys = new String[8];
+    private String[] values = new String[8];
+    private int size;
+
+    /**
+     * @return number of parameters
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index
+     * @return the name of the index-th parameter in name order
+     */
+    public String keyAt(int index) {
+        checkIndex(index);
+        return keys[index];
+    }
+
+    /**
+     * @param index
+     * @return the value of the index-th parameter in name order
+     */
+    public String valueAt(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    @Override
+    public String get(Object key) {
+        int index = key instanceof String ? indexOf((String) key) : -1;
+        return index >= 0 ? values[index] : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && indexOf((String) key) >= 0;
+    }
+
+    @Override
+    public String put(String key, String value) {
+        if (key == null) {
+            throw new NullPointerException("key");
+        }
+        int index = indexOf(key);
+        if (index >= 0) {
+            String old = values[index];
+            values[index] = value;
+            return old;
+        }
+        index = -index - 1;
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(values, index, values, index + 1, size - index);
+        keys[index] = key;
+        values[index] = value;
+        size++;
+        return null;
+    }
+
+    @Override
+    public String remove(Object key) {
+        int index = key instanceof String ? indexOf((String) key) : -1;
+        if (index < 0) {
+            return null;
+        }
+        String old = values[index];
+        removeAt(index);
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        return new AbstractSet<Map.Entry<String, String>>() {
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Map.Entry<String, String>> iterator() {
+                return new Iterator<Map.Entry<String, String>>() {
+
+                    private int next;
+                    private int last = -1;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public Map.Entry<String, String> next() {
+                        if (next >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        last = next++;
+                        return new SimpleImmutableEntry<String, String>(keys[last], values[last]);
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last < 0) {
+                            throw new IllegalStateException();
+                        }
+                        removeAt(last);
+                        next = last;
+                        last = -1;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Binary search by name
+     * @return the index, or -(insertion point) - 1
+     */
+    private int indexOf(String key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void removeAt(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        keys[size] = null;
+        values[size] = null;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+    }
+}
@@ -12,11 +12,35 @@
 package com.openx.oauth.request;
 
 import com.openx.oauth.service.OpenXServiceImpl;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.security.cert.X509Certificate;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import org.apache.http.HttpHost;
+import org.apache.http.ParseException;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.entity.ContentType;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.ssl.SSLContexts;
+import org.scribe.exceptions.OAuthException;
 import org.scribe.model.OAuthConstants;
 import org.scribe.model.OAuthRequest;
 import org.scribe.model.Verb;
+import org.scribe.utils.StreamUtils;
+import org.scribe.utils.URLUtils;
 
 /**
  *
@@ -25,7 +49,9 @@ import org.scribe.model.Verb;
 public class OpenXRequest extends OAuthRequest {
 
     private static final String OAUTH_PREFIX = "oauth_";
-    private Map<String, String> oauthParameters;
+    private final OAuthParameters oauthParameters;
+    private HttpHost proxy;
+    private boolean ignoreSslCertificate;
 
     /**
      * Default constructor.
@@ -35,7 +61,7 @@ public class OpenXRequest extends OAuthRequest {
      */
     public OpenXRequest(Verb verb, String url) {
         super(verb, url);
-        this.oauthParameters = new HashMap<String, String>();
+        this.oauthParameters = new OAuthParameters();
     }
 
     /**
@@ -61,12 +87,13 @@ public class OpenXRequest extends OAuthRequest {
     }
 
     /**
-     * Returns the {@link Map} containing the key-value pair of parameters.
+     * Returns the {@link Map} containing the key-value pair of parameters,
+     * sorted by name.
      *
      * @return parameters as map
      */
     @Override
-    public Map<String, String> getOauthParameters() {
+    public OAuthParameters getOauthParameters() {
         return this.oauthParameters;
     }
 
@@ -86,4 +113,123 @@ public class OpenXRequest extends OAuthRequest {
     public void removeOAuthParameter(String key) {
         this.oauthParameters.remove(key);
     }
-}
\ No newline at end of file
+
+    /**
+     * Sends this request through a proxy. Unlike the http.proxyHost system
+     * properties this only affects this request.
+     * @param proxy the proxy, or null for the JVM's default
+     */
+    public void setProxy(HttpHost proxy) {
+        this.proxy = proxy;
+    }
+
+    /**
+     * Disables the SSL certificate check for this request only
+     * @param ignoreSslCertificate
+     */
+    public void setIgnoreSslCertificate(boolean ignoreSslCertificate) {
+        this.ignoreSslCertificate = ignoreSslCertificate;
+    }
+
+    /**
+     * Sends the request like {@link #send()}, but honours the proxy and
+     * certificate settings of this request
+     * @return the response
+     * @throws OAuthException if the request could not be sent
+     */
+    public OpenXResponse execute() {
+        try {
+            HttpURLConnection connection = openConnection();
+            try {
+                return doExecute(connection);
+            } finally {
+                connection.disconnect();
+            }
+        } catch (IOException e) {
+            throw new OAuthException("Problems while creating connection", e);
+        }
+    }
+
+    private HttpURLConnection openConnection() throws IOException {
+        URL url = new URL(URLUtils.appendParametersToQueryString(getUrl(),
+                getQueryStringParams()));
+        HttpURLConnection connection = (HttpURLConnection) (proxy == null
+                ? url.openConnection()
+                : url.openConnection(new Proxy(Proxy.Type.HTTP,
+                        new InetSocketAddress(proxy.getHostName(), proxy.getPort()))));
+        if (ignoreSslCertificate && connection instanceof HttpsURLConnection) {
+            HttpsURLConnection https = (HttpsURLConnection) connection;
+            https.setSSLSocketFactory(TrustAll.SOCKET_FACTORY);
+            https.setHostnameVerifier(NoopHostnameVerifier.INSTANCE);
+        }
+        return connection;
+    }
+
+    private OpenXResponse doExecute(HttpURLConnection connection) throws IOException {
+        connection.setRequestMethod(getVerb().name());
+        for (Map.Entry<String, String> header : getHeaders().entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        if (getVerb() == Verb.PUT || getVerb() == Verb.POST) {
+            byte[] body = getBodyContents().getBytes(bodyCharset());
+            connection.setRequestProperty("Content-Length", String.valueOf(body.length));
+            connection.setDoOutput(true);
+            OutputStream out = connection.getOutputStream();
+            try {
+                out.write(body);
+            } finally {
+                out.close();
+            }
+        }
+        int code = connection.getResponseCode();
+        InputStream in = code >= 200 && code < 400 ? connection.getInputStream()
+                : connection.getErrorStream();
+        String body = in != null ? StreamUtils.getStreamContents(in) : "";
+        Map<String, String> headers = new HashMap<String, String>();
+        for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+            List<String> values = header.getValue();
+            if (!values.isEmpty()) {
+                headers.put(header.getKey(), values.get(values.size() - 1));
+            }
+        }
+        return new OpenXResponse(code, body, headers);
+    }
+
+    /**
+     * The charset of the Content-Type header, UTF-8 if there is none
+     */
+    private Charset bodyCharset() {
+        for (Map.Entry<String, String> header : getHeaders().entrySet()) {
+            if (HTTP.CONTENT_TYPE.equalsIgnoreCase(header.getKey())) {
+                try {
+                    Charset charset = ContentType.parse(header.getValue()).getCharset();
+                    if (charset != null) {
+                        return charset;
+                    }
+                } catch (ParseException | UnsupportedCharsetException e) {
+                    // fall back to UTF-8
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Creates the trust-all socket factory on first use
+     */
+    private static final class TrustAll {
+
+        private static final SSLSocketFactory SOCKET_FACTORY = create();
+
+        private static SSLSocketFactory create() {
+            try {
+                SSLContext context = SSLContexts.custom()
+                        .loadTrustMaterial((X509Certificate[] chain, String authType) -> true)
+                        .build();
+                return context.getSocketFactory();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
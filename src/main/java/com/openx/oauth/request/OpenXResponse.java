@@ -0,0 +1,75 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.request;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Response to an {@link OpenXRequest}, read completely
+ */
+public class OpenXResponse {
+
+    private final int code;
+    private final String body;
+    private final Map<String, String> headers;
+
+    /**
+     * Object Constructor
+     * @param code HTTP status
+     * @param body
+     * @param headers
+     */
+    public OpenXResponse(int code, String body, Map<String, String> headers) {
+        this.code = code;
+        this.body = body;
+        this.headers = Collections.unmodifiableMap(headers);
+    }
+
+    /**
+     * @return the HTTP status
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * @return the body, "" if there was none
+     */
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * @return the headers, the last value of each
+     */
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @param name
+     * @return the header's last value, or null if it is absent
+     */
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    /**
+     * toString method
+     * @return
+     */
+    @Override
+    public String toString() {
+        return String.format("@OpenXResponse(%d)", code);
+    }
+}
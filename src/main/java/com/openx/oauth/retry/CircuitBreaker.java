@@ -0,0 +1,113 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.retry;
+
+/**
+ * Per-host circuit breaker. After a number of consecutive failures the
+ * circuit opens and requests fail fast; once the open period has passed a
+ * single probe request is let through, which closes the circuit again on
+ * success or reopens it on failure.
+ */
+public class CircuitBreaker {
+
+    /**
+     * Circuit states
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String host;
+    private final int failureThreshold;
+    private final long openMillis;
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean probing;
+
+    /**
+     * Object Constructor
+     * @param host
+     * @param failureThreshold consecutive failures that open the circuit
+     * @param openMillis how long the circuit stays open before a probe
+     */
+    public CircuitBreaker(String host, int failureThreshold, long openMillis) {
+        this.host = host;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Checks whether a request may be sent now. A request admitted as the
+     * probe must end with {@link #onSuccess()}, {@link #onFailure()} or,
+     * if it was abandoned without an outcome, {@link #release()}.
+     * @return true if the request is the half-open probe
+     * @throws CircuitOpenException if the circuit is open
+     */
+    public synchronized boolean check() throws CircuitOpenException {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+            probing = false;
+        }
+        if (state == State.OPEN || (state == State.HALF_OPEN && probing)) {
+            throw new CircuitOpenException(host);
+        }
+        if (state == State.HALF_OPEN) {
+            probing = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records that the probe was abandoned without an outcome, e.g.
+     * cancelled, so the next request may probe instead
+     */
+    public synchronized void release() {
+        probing = false;
+    }
+
+    /**
+     * Records a request that reached a healthy host
+     */
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+        probing = false;
+    }
+
+    /**
+     * Records a request that failed because of the host
+     */
+    public synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            probing = false;
+        }
+    }
+
+    /**
+     * @return the current state
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return the host this breaker guards
+     */
+    public String getHost() {
+        return host;
+    }
+}
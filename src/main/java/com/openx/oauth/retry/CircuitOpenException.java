@@ -0,0 +1,31 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.retry;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending a request while the circuit breaker of its
+ * host is open.
+ */
+public class CircuitOpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Object Constructor
+     * @param host
+     */
+    public CircuitOpenException(String host) {
+        super("circuit open for " + host);
+    }
+}
@@ -0,0 +1,156 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.retry;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides when a read call is sent a second time to cut tail latency.
+ *
+ * The hedge delay is a percentile of recently observed response times, so
+ * only the slowest calls are hedged. Every call earns a fraction of a hedge
+ * credit and every hedge spends a whole one, which caps hedges at that
+ * fraction of all calls even while the API is slow for everyone.
+ */
+public class HedgePolicy {
+
+    private static final ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "openx-hedge");
+                t.setDaemon(true);
+                return t;
+            });
+
+    private static final int SAMPLES = 1024;
+    private static final int RECOMPUTE_EVERY = 64;
+    private static final double MAX_CREDITS = 10;
+
+    private final double percentile;
+    private final double maxHedgeRatio;
+    private long minDelayMillis = 10;
+    private long initialDelayMillis = 500;
+
+    private final long[] samples = new long[SAMPLES];
+    private int sampleCount;
+    private int nextSample;
+    private volatile long delayMillis = -1;
+    private double credits = MAX_CREDITS;
+    private final AtomicLong callCount = new AtomicLong();
+    private final AtomicLong hedgeCount = new AtomicLong();
+
+    /**
+     * Object Constructor
+     * @param percentile response time percentile after which a call is
+     * hedged, e.g. 0.95
+     * @param maxHedgeRatio upper bound for hedges per call, e.g. 0.05
+     */
+    public HedgePolicy(double percentile, double maxHedgeRatio) {
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1");
+        }
+        if (maxHedgeRatio <= 0 || maxHedgeRatio > 1) {
+            throw new IllegalArgumentException("maxHedgeRatio must be in (0, 1]");
+        }
+        this.percentile = percentile;
+        this.maxHedgeRatio = maxHedgeRatio;
+    }
+
+    /**
+     * Configures the delay bounds
+     * @param minDelay the hedge delay never drops below this
+     * @param initialDelay delay used until enough response times are known
+     * @param unit
+     * @return this policy for method chaining
+     */
+    public HedgePolicy delays(long minDelay, long initialDelay, TimeUnit unit) {
+        this.minDelayMillis = unit.toMillis(minDelay);
+        this.initialDelayMillis = unit.toMillis(initialDelay);
+        return this;
+    }
+
+    /**
+     * @return milliseconds to wait for a response before hedging
+     */
+    public long delayMillis() {
+        long delay = delayMillis;
+        return Math.max(minDelayMillis, delay >= 0 ? delay : initialDelayMillis);
+    }
+
+    /**
+     * Records the response time of a call
+     * @param latencyMillis
+     */
+    public void record(long latencyMillis) {
+        long[] snapshot = null;
+        synchronized (samples) {
+            samples[nextSample] = latencyMillis;
+            nextSample = (nextSample + 1) % SAMPLES;
+            sampleCount++;
+            if (sampleCount % RECOMPUTE_EVERY == 0) {
+                snapshot = Arrays.copyOf(samples, Math.min(sampleCount, SAMPLES));
+            }
+        }
+        if (snapshot != null) {
+            Arrays.sort(snapshot);
+            delayMillis = snapshot[(int) Math.min(snapshot.length - 1,
+                    Math.floor(percentile * snapshot.length))];
+        }
+    }
+
+    /**
+     * Counts a call that may be hedged
+     */
+    public synchronized void onCall() {
+        callCount.incrementAndGet();
+        credits = Math.min(MAX_CREDITS, credits + maxHedgeRatio);
+    }
+
+    /**
+     * Takes a hedge credit
+     * @return true if the call may be hedged
+     */
+    public synchronized boolean tryHedge() {
+        if (credits < 1) {
+            return false;
+        }
+        credits -= 1;
+        hedgeCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Runs a hedge after its delay
+     * @param hedge
+     * @param delayMillis
+     */
+    public void schedule(Runnable hedge, long delayMillis) {
+        timer.schedule(hedge, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return calls seen
+     */
+    public long getCallCount() {
+        return callCount.get();
+    }
+
+    /**
+     * @return hedges sent
+     */
+    public long getHedgeCount() {
+        return hedgeCount.get();
+    }
+}
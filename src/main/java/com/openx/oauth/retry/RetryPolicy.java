@@ -0,0 +1,219 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.retry;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.openx.oauth.retry.CircuitBreaker.State;
+
+/**
+ * Decides whether and when a failed call is sent again.
+ *
+ * Delays grow exponentially from the base delay and are drawn uniformly
+ * between zero and that bound ("full jitter"), so clients that failed
+ * together do not retry together. All attempts of one call must fit into
+ * the deadline. Only idempotent methods are retried unless configured
+ * otherwise.
+ *
+ * The policy also keeps one {@link CircuitBreaker} per host; share a
+ * policy between helpers to share their breakers.
+ */
+public class RetryPolicy {
+
+    private static final ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "openx-retry");
+                t.setDaemon(true);
+                return t;
+            });
+
+    private static final Set<String> IDEMPOTENT_METHODS = new HashSet<String>(
+            Arrays.asList("GET", "HEAD", "OPTIONS", "PUT", "DELETE"));
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final long deadlineMillis;
+    private boolean retryNonIdempotent;
+    private int failureThreshold = 5;
+    private long openMillis = 30000;
+    private final ConcurrentMap<String, CircuitBreaker> breakers =
+            new ConcurrentHashMap<String, CircuitBreaker>();
+
+    /**
+     * Object Constructor
+     * @param maxAttempts attempts per call, including the first one
+     * @param baseDelay delay bound before the first retry
+     * @param maxDelay upper bound for any delay
+     * @param deadline total time a call may take over all attempts
+     * @param unit
+     */
+    public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay, long deadline,
+            TimeUnit unit) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("maxAttempts must be positive");
+        }
+        if (baseDelay <= 0 || maxDelay < baseDelay) {
+            throw new IllegalArgumentException("need 0 < baseDelay <= maxDelay");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = unit.toMillis(baseDelay);
+        this.maxDelayMillis = unit.toMillis(maxDelay);
+        this.deadlineMillis = unit.toMillis(deadline);
+    }
+
+    /**
+     * Also retries POST and other non-idempotent methods. Only enable this
+     * if the calls you make are safe to repeat.
+     * @param retryNonIdempotent
+     * @return this policy for method chaining
+     */
+    public RetryPolicy retryNonIdempotent(boolean retryNonIdempotent) {
+        this.retryNonIdempotent = retryNonIdempotent;
+        return this;
+    }
+
+    /**
+     * Configures the circuit breakers created from now on
+     * @param failureThreshold consecutive failures that open a circuit
+     * @param open how long a circuit stays open before a probe
+     * @param unit
+     * @return this policy for method chaining
+     */
+    public RetryPolicy circuitBreaker(int failureThreshold, long open, TimeUnit unit) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("failureThreshold must be positive");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openMillis = unit.toMillis(open);
+        return this;
+    }
+
+    /**
+     * Gets the circuit breaker of a request's host
+     * @param uri
+     * @return CircuitBreaker
+     */
+    public CircuitBreaker circuitBreaker(URI uri) {
+        String host = uri.getHost() + ":" + uri.getPort();
+        CircuitBreaker breaker = breakers.get(host);
+        if (breaker == null) {
+            CircuitBreaker created = new CircuitBreaker(host, failureThreshold, openMillis);
+            breaker = breakers.putIfAbsent(host, created);
+            if (breaker == null) {
+                breaker = created;
+            }
+        }
+        return breaker;
+    }
+
+    /**
+     * @param host as host:port
+     * @return the breaker's state, CLOSED if no request went to the host yet
+     */
+    public State getCircuitState(String host) {
+        CircuitBreaker breaker = breakers.get(host);
+        return breaker != null ? breaker.getState() : State.CLOSED;
+    }
+
+    /**
+     * @return the point in time (System.nanoTime) a call started now must
+     * be done by
+     */
+    public long deadline() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+    }
+
+    /**
+     * Decides on the next attempt after a response
+     * @param method HTTP method of the call
+     * @param status status of the response
+     * @param attempt attempts made so far
+     * @param deadline as returned by {@link #deadline()}
+     * @return milliseconds to wait before the next attempt, or -1 to give up
+     */
+    public long delayAfter(String method, int status, int attempt, long deadline) {
+        return isRetryable(status) ? delay(method, attempt, deadline) : -1;
+    }
+
+    /**
+     * Decides on the next attempt after a call failed without response
+     * @param method HTTP method of the call
+     * @param error
+     * @param attempt attempts made so far
+     * @param deadline as returned by {@link #deadline()}
+     * @return milliseconds to wait before the next attempt, or -1 to give up
+     */
+    public long delayAfter(String method, Throwable error, int attempt, long deadline) {
+        return isHostFailure(error) ? delay(method, attempt, deadline) : -1;
+    }
+
+    /**
+     * Runs an async retry after its delay
+     * @param retry
+     * @param delayMillis
+     */
+    public void schedule(Runnable retry, long delayMillis) {
+        timer.schedule(retry, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param status
+     * @return true if the status means the host failed rather than the call
+     */
+    public static boolean isHostFailure(int status) {
+        return status == 500 || status == 502 || status == 503 || status == 504;
+    }
+
+    private static boolean isRetryable(int status) {
+        return status == 429 || isHostFailure(status);
+    }
+
+    /**
+     * @param error
+     * @return true if the error means the host failed, false if the caller
+     * was interrupted or the call was never sent
+     */
+    public static boolean isHostFailure(Throwable error) {
+        if (!(error instanceof IOException) || error instanceof CircuitOpenException) {
+            return false;
+        }
+        return !(error instanceof InterruptedIOException)
+                || error instanceof SocketTimeoutException;
+    }
+
+    private long delay(String method, int attempt, long deadline) {
+        if (attempt >= maxAttempts
+                || (!retryNonIdempotent && !IDEMPOTENT_METHODS.contains(method))) {
+            return -1;
+        }
+        long bound = baseDelayMillis << Math.min(attempt - 1, 30);
+        if (bound <= 0 || bound > maxDelayMillis) {
+            bound = maxDelayMillis;
+        }
+        long delay = ThreadLocalRandom.current().nextLong(bound + 1);
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        return delay < remaining ? delay : -1;
+    }
+}
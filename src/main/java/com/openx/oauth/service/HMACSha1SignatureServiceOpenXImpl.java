@@ -0,0 +1,160 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.service;
+
+import java.nio.charset.StandardCharsets;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.scribe.exceptions.OAuthSignatureException;
+import org.scribe.services.SignatureService;
+import org.scribe.utils.Preconditions;
+import org.scribe.utils.URLUtils;
+
+/**
+ * HMAC-SHA1 signature service that signs like scribe's
+ * HMACSha1SignatureService without setting up a Mac for every signature.
+ *
+ * Each thread keeps a few initialized Macs keyed by consumer secret and
+ * token secret, plus a buffer for the base string, so signing with a known
+ * key pair allocates nothing but the result. Instances are thread-safe.
+ */
+public class HMACSha1SignatureServiceOpenXImpl implements SignatureService {
+
+    private static final String HMAC_SHA1 = "HmacSHA1";
+    private static final String METHOD = "HMAC-SHA1";
+    private static final int KEYS_PER_THREAD = 4;
+    private static final char[] BASE64 =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    private final ThreadLocal<Signer> signers = new ThreadLocal<Signer>() {
+        @Override
+        protected Signer initialValue() {
+            return new Signer();
+        }
+    };
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getSignature(String baseString, String apiSecret, String tokenSecret) {
+        try {
+            Preconditions.checkEmptyString(baseString, "Base string cant be null or empty string");
+            Preconditions.checkEmptyString(apiSecret, "Api secret cant be null or empty string");
+            return signers.get().sign(baseString, apiSecret, tokenSecret);
+        } catch (Exception e) {
+            throw new OAuthSignatureException(baseString, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getSignatureMethod() {
+        return METHOD;
+    }
+
+    /**
+     * Per-thread signing state
+     */
+    private static final class Signer {
+
+        private final String[] apiSecrets = new String[KEYS_PER_THREAD];
+        private final String[] tokenSecrets = new String[KEYS_PER_THREAD];
+        private final Mac[] macs = new Mac[KEYS_PER_THREAD];
+        private int next;
+        private byte[] input = new byte[512];
+        private final byte[] digest = new byte[20];
+        private final char[] encoded = new char[28];
+
+        private String sign(String baseString, String apiSecret, String tokenSecret)
+                throws Exception {
+            Mac mac = mac(apiSecret, tokenSecret);
+            int length = encode(baseString);
+            if (length < 0) {
+                mac.update(baseString.getBytes(StandardCharsets.UTF_8));
+            } else {
+                mac.update(input, 0, length);
+            }
+            mac.doFinal(digest, 0);
+            return base64();
+        }
+
+        /**
+         * Finds the Mac of a key pair, replacing the oldest one on a miss
+         */
+        private Mac mac(String apiSecret, String tokenSecret) throws Exception {
+            for (int i = 0; i < KEYS_PER_THREAD; i++) {
+                if (macs[i] != null && apiSecret.equals(apiSecrets[i])
+                        && tokenSecret.equals(tokenSecrets[i])) {
+                    return macs[i];
+                }
+            }
+            String key = URLUtils.percentEncode(apiSecret) + '&'
+                    + URLUtils.percentEncode(tokenSecret);
+            Mac mac = macs[next];
+            // a failed init must not leave the old key pair pointing at it
+            macs[next] = null;
+            if (mac == null) {
+                mac = Mac.getInstance(HMAC_SHA1);
+            }
+            mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), HMAC_SHA1));
+            macs[next] = mac;
+            apiSecrets[next] = apiSecret;
+            tokenSecrets[next] = tokenSecret;
+            next = (next + 1) % KEYS_PER_THREAD;
+            return mac;
+        }
+
+        /**
+         * Copies an ASCII base string (base strings are percent-encoded)
+         * into the input buffer
+         * @return the length, or -1 if the string is not ASCII
+         */
+        private int encode(String baseString) {
+            int length = baseString.length();
+            if (length > input.length) {
+                input = new byte[Math.max(length, input.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                char c = baseString.charAt(i);
+                if (c >= 0x80) {
+                    return -1;
+                }
+                input[i] = (byte) c;
+            }
+            return length;
+        }
+
+        /**
+         * Base64 of the 20 digest bytes: six full groups and one padded
+         */
+        private String base64() {
+            int out = 0;
+            for (int i = 0; i < 18; i += 3) {
+                int bits = (digest[i] & 0xff) << 16 | (digest[i + 1] & 0xff) << 8
+                        | (digest[i + 2] & 0xff);
+                encoded[out++] = BASE64[bits >>> 18];
+                encoded[out++] = BASE64[(bits >>> 12) & 0x3f];
+                encoded[out++] = BASE64[(bits >>> 6) & 0x3f];
+                encoded[out++] = BASE64[bits & 0x3f];
+            }
+            int bits = (digest[18] & 0xff) << 16 | (digest[19] & 0xff) << 8;
+            encoded[out++] = BASE64[bits >>> 18];
+            encoded[out++] = BASE64[(bits >>> 12) & 0x3f];
+            encoded[out++] = BASE64[(bits >>> 6) & 0x3f];
+            encoded[out] = '=';
+            return new String(encoded);
+        }
+    }
+}
@@ -13,6 +13,12 @@ package com.openx.oauth.service;
 
 import com.openx.oauth.api.OpenXApi;
 import com.openx.oauth.request.OpenXRequest;
+import com.openx.oauth.request.OpenXResponse;
+import com.openx.oauth.transport.OpenXHttpTransport;
+import com.openx.oauth.transport.OpenXRequestAdapter;
+import java.io.IOException;
+import org.apache.http.HttpHost;
+import org.scribe.exceptions.OAuthException;
 import org.scribe.model.*;
 import org.scribe.oauth.*;
 
@@ -29,6 +35,9 @@ public class OpenXServiceImpl implements OAuthService {
     private OAuthConfig config;
     private OpenXApi api;
     private String scope;
+    private HttpHost proxy;
+    private boolean ignoreSslCertificate;
+    private OpenXHttpTransport transport;
 
     /**
      * Default constructor
@@ -47,15 +56,72 @@ public class OpenXServiceImpl implements OAuthService {
      */
     @Override
     public Token getRequestToken() {
-        OpenXRequest request = new OpenXRequest(api.getRequestTokenVerb(), api.getRequestTokenEndpoint());
+        OpenXRequest request = newRequest(api.getRequestTokenVerb(), api.getRequestTokenEndpoint());
         request.addOAuthParameter(OAuthConstants.CALLBACK, config.getCallback());
         addOAuthParams(request, OAuthConstants.EMPTY_TOKEN);
         addOAuthHeader(request);
         request.addBodyParameter(OAuthConstants.CALLBACK, config.getCallback());
-        Response response = request.send();
+        OpenXResponse response = send(request);
         return api.getRequestTokenExtractor().extract(response.getBody());
     }
 
+    /**
+     * Sends the token requests of this service through a proxy
+     * @param proxy the proxy, or null for the JVM's default
+     */
+    public void setProxy(HttpHost proxy) {
+        this.proxy = proxy;
+    }
+
+    /**
+     * Disables the SSL certificate check for the token requests of this
+     * service
+     * @param ignoreSslCertificate
+     */
+    public void setIgnoreSslCertificate(boolean ignoreSslCertificate) {
+        this.ignoreSslCertificate = ignoreSslCertificate;
+    }
+
+    /**
+     * Sends the token requests of this service through a pooled transport,
+     * e.g. the one the client uses for API calls, so they reuse its
+     * connections. The transport's own proxy settings apply.
+     * @param transport the transport, or null to open a connection per request
+     */
+    public void setTransport(OpenXHttpTransport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Sends a signed request
+     * @param request
+     * @return the response
+     * @throws OAuthException if the request could not be sent
+     */
+    protected OpenXResponse send(OpenXRequest request) {
+        if (transport == null) {
+            return request.execute();
+        }
+        try {
+            return OpenXRequestAdapter.execute(transport, request);
+        } catch (IOException e) {
+            throw new OAuthException("Problems while creating connection", e);
+        }
+    }
+
+    /**
+     * Creates a request with the connection settings of this service
+     * @param verb
+     * @param url
+     * @return OpenXRequest
+     */
+    protected OpenXRequest newRequest(Verb verb, String url) {
+        OpenXRequest request = new OpenXRequest(verb, url);
+        request.setProxy(proxy);
+        request.setIgnoreSslCertificate(ignoreSslCertificate);
+        return request;
+    }
+
     /**
      * Adds params to the OAuth Header
      * @param request
@@ -86,12 +152,12 @@ public class OpenXServiceImpl implements OAuthService {
      */
     @Override
     public Token getAccessToken(Token requestToken, Verifier verifier) {
-        OpenXRequest request = new OpenXRequest(api.getAccessTokenVerb(), api.getAccessTokenEndpoint());
+        OpenXRequest request = newRequest(api.getAccessTokenVerb(), api.getAccessTokenEndpoint());
         request.addOAuthParameter(OAuthConstants.TOKEN, requestToken.getToken());
         request.addOAuthParameter(OAuthConstants.VERIFIER, verifier.getValue());
         addOAuthParams(request, requestToken);
         addOAuthHeader(request);
-        Response response = request.send();
+        OpenXResponse response = send(request);
         return api.getAccessTokenExtractor().extract(response.getBody());
     }
 
@@ -0,0 +1,156 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.session;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+/**
+ * Keeps sessions in a properties file that only its owner may read.
+ *
+ * Access is serialized with a lock on a companion ".lock" file, so several
+ * processes (e.g. batch jobs started at the same time) can share one store.
+ * Saves write a temporary file and rename it over the old one. Use a single
+ * instance per file within a process.
+ */
+public class FileSessionStore implements SessionStore {
+
+    private final File file;
+    private final File lockFile;
+
+    /**
+     * Object Constructor
+     * @param file
+     */
+    public FileSessionStore(File file) {
+        this.file = file;
+        this.lockFile = new File(file.getPath() + ".lock");
+    }
+
+    @Override
+    public synchronized OX3Session load(String key) throws IOException {
+        FileChannel lock = lock(true);
+        try {
+            Properties sessions = read();
+            String token = sessions.getProperty(key + ".token");
+            if (token == null || token.isEmpty()) {
+                return null;
+            }
+            long created;
+            try {
+                created = Long.parseLong(sessions.getProperty(key + ".created", "0"));
+            } catch (NumberFormatException e) {
+                created = 0;
+            }
+            return new OX3Session(token, sessions.getProperty(key + ".secret"), created);
+        } finally {
+            lock.close();
+        }
+    }
+
+    @Override
+    public synchronized void save(String key, OX3Session session) throws IOException {
+        FileChannel lock = lock(false);
+        try {
+            Properties sessions = read();
+            sessions.setProperty(key + ".token", session.getToken());
+            if (session.getSecret() != null) {
+                sessions.setProperty(key + ".secret", session.getSecret());
+            } else {
+                sessions.remove(key + ".secret");
+            }
+            sessions.setProperty(key + ".created", String.valueOf(session.getCreatedMillis()));
+            write(sessions);
+        } finally {
+            lock.close();
+        }
+    }
+
+    @Override
+    public synchronized void remove(String key) throws IOException {
+        FileChannel lock = lock(false);
+        try {
+            Properties sessions = read();
+            if (sessions.remove(key + ".token") != null) {
+                sessions.remove(key + ".secret");
+                sessions.remove(key + ".created");
+                write(sessions);
+            }
+        } finally {
+            lock.close();
+        }
+    }
+
+    /**
+     * Opens the lock file and locks it; closing the channel releases the lock
+     */
+    private FileChannel lock(boolean shared) throws IOException {
+        FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.lock(0, Long.MAX_VALUE, shared);
+            if (lock == null) {
+                throw new IOException("could not lock " + lockFile);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    private Properties read() throws IOException {
+        Properties sessions = new Properties();
+        if (file.exists()) {
+            InputStream in = new FileInputStream(file);
+            try {
+                sessions.load(in);
+            } finally {
+                in.close();
+            }
+        }
+        return sessions;
+    }
+
+    private void write(Properties sessions) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        File tmp = File.createTempFile("." + file.getName() + "-", ".tmp", dir);
+        try {
+            // tokens are credentials
+            tmp.setReadable(false, false);
+            tmp.setWritable(false, false);
+            tmp.setReadable(true, true);
+            tmp.setWritable(true, true);
+            FileOutputStream out = new FileOutputStream(tmp);
+            try {
+                sessions.store(out, "OX3 OAuth sessions");
+                out.flush();
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tmp.delete();
+        }
+    }
+}
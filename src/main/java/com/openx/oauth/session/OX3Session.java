@@ -0,0 +1,68 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.session;
+
+/**
+ * An OAuth access token obtained by logging in, as kept by a
+ * {@link SessionStore}. The API session cookie is made from the token.
+ */
+public class OX3Session {
+
+    private final String token;
+    private final String secret;
+    private final long createdMillis;
+
+    /**
+     * Object Constructor
+     * @param token the access token
+     * @param secret the access token secret
+     * @param createdMillis when the token was obtained
+     */
+    public OX3Session(String token, String secret, long createdMillis) {
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("token must not be empty");
+        }
+        this.token = token;
+        this.secret = secret;
+        this.createdMillis = createdMillis;
+    }
+
+    /**
+     * @return the access token
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * @return the access token secret, may be null
+     */
+    public String getSecret() {
+        return secret;
+    }
+
+    /**
+     * @return when the token was obtained, in epoch milliseconds
+     */
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    /**
+     * toString method, does not show the token
+     * @return
+     */
+    @Override
+    public String toString() {
+        return String.format("@OX3Session(created=%d)", createdMillis);
+    }
+}
@@ -0,0 +1,184 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.session;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Renews a session at most once per rejection. Callers note the session
+ * generation before sending a request; when the request is rejected they
+ * ask for a renewal of that generation. The first caller starts the
+ * renewal, everyone else rejected by the same session waits for it, and
+ * callers that were rejected by an older session get the current one
+ * without another login.
+ *
+ * A session that is rejected again soon after a renewal (30 seconds by
+ * default, see {@link #minRenewalInterval}) is not renewed again: the 401
+ * then has another cause than an expired session, and logging in on every
+ * call would not help.
+ *
+ * Optionally renews the session in the background at a fixed age, so that
+ * long-running workers never wait for a login.
+ */
+public class SessionGuard {
+
+    private static final Logger logger = Logger.getLogger(SessionGuard.class.getName());
+
+    private static final ExecutorService renewers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "openx-session");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "openx-session-refresh");
+                t.setDaemon(true);
+                return t;
+            });
+
+    private final SessionRenewer renewer;
+    private volatile long generation;
+    private CompletableFuture<Void> renewal;
+    private long refreshMillis;
+    private ScheduledFuture<?> refresh;
+    private long minIntervalNanos = TimeUnit.SECONDS.toNanos(30);
+    private long renewedAt;
+    private boolean renewed;
+
+    /**
+     * Object Constructor
+     * @param renewer
+     */
+    public SessionGuard(SessionRenewer renewer) {
+        this.renewer = renewer;
+    }
+
+    /**
+     * Renews the session in the background once it is this old. Off by
+     * default.
+     * @param age
+     * @param unit
+     * @return this
+     */
+    public synchronized SessionGuard refreshAfter(long age, TimeUnit unit) {
+        if (age <= 0) {
+            throw new IllegalArgumentException("age must be positive");
+        }
+        refreshMillis = unit.toMillis(age);
+        scheduleRefresh();
+        return this;
+    }
+
+    /**
+     * Refuses to renew a session that is rejected within this time of its
+     * renewal; the rejected calls then fail with the 401
+     * @param interval zero to renew on every rejection
+     * @param unit
+     * @return this
+     */
+    public synchronized SessionGuard minRenewalInterval(long interval, TimeUnit unit) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("interval must not be negative");
+        }
+        minIntervalNanos = unit.toNanos(interval);
+        return this;
+    }
+
+    /**
+     * Stops background renewals
+     */
+    public synchronized void stopRefresh() {
+        refreshMillis = 0;
+        if (refresh != null) {
+            refresh.cancel(false);
+            refresh = null;
+        }
+    }
+
+    /**
+     * @return the current session generation, note it before each request
+     */
+    public long generation() {
+        return generation;
+    }
+
+    /**
+     * Renews the session unless it was renewed since the given generation
+     * @param rejected generation of the session the API rejected
+     * @return future completed once a newer session is installed
+     */
+    public CompletableFuture<Void> renew(long rejected) {
+        return renew(rejected, true);
+    }
+
+    private CompletableFuture<Void> renew(long rejected, boolean rejectedByApi) {
+        final CompletableFuture<Void> started;
+        synchronized (this) {
+            if (generation != rejected) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (renewal != null) {
+                return renewal;
+            }
+            long age = System.nanoTime() - renewedAt;
+            if (rejectedByApi && renewed && age < minIntervalNanos) {
+                logger.fine("Not renewing a session renewed "
+                        + TimeUnit.NANOSECONDS.toMillis(age) + " ms ago");
+                CompletableFuture<Void> refused = new CompletableFuture<Void>();
+                refused.completeExceptionally(new IOException(
+                        "the API rejects a session that was just renewed"));
+                return refused;
+            }
+            started = renewal = new CompletableFuture<Void>();
+        }
+        renewers.execute(() -> {
+            try {
+                renewer.renew();
+                synchronized (this) {
+                    generation++;
+                    renewal = null;
+                    renewed = true;
+                    renewedAt = System.nanoTime();
+                    scheduleRefresh();
+                }
+                started.complete(null);
+            } catch (Throwable ex) {
+                logger.warning("Could not renew the session: " + ex);
+                synchronized (this) {
+                    renewal = null;
+                }
+                started.completeExceptionally(ex);
+            }
+        });
+        return started;
+    }
+
+    private void scheduleRefresh() {
+        if (refresh != null) {
+            refresh.cancel(false);
+            refresh = null;
+        }
+        if (refreshMillis > 0) {
+            final long current = generation;
+            refresh = timer.schedule(() -> renew(current, false), refreshMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+}
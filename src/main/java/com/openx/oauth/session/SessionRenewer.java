@@ -0,0 +1,24 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.session;
+
+/**
+ * Logs in again and installs the new session, e.g. by running the OAuth
+ * flow and updating the session cookie of the Helper
+ */
+public interface SessionRenewer {
+
+    /**
+     * @throws Exception if the login failed
+     */
+    void renew() throws Exception;
+}
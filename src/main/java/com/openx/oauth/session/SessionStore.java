@@ -0,0 +1,42 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.session;
+
+import java.io.IOException;
+
+/**
+ * Persists OAuth sessions so a client can skip the login on restart.
+ * Sessions are keyed by user and API domain.
+ */
+public interface SessionStore {
+
+    /**
+     * @param key
+     * @return the stored session, or null if there is none
+     * @throws IOException
+     */
+    OX3Session load(String key) throws IOException;
+
+    /**
+     * @param key
+     * @param session
+     * @throws IOException
+     */
+    void save(String key, OX3Session session) throws IOException;
+
+    /**
+     * Forgets a session, e.g. after the API rejected its token
+     * @param key
+     * @throws IOException
+     */
+    void remove(String key) throws IOException;
+}
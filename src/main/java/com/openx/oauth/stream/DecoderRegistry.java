@@ -0,0 +1,93 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.stream;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.gson.Gson;
+
+/**
+ * Thread-safe registry of decoders by type. Types with a hand-written
+ * decoder are decoded without reflection; any other type falls back to
+ * Gson's reflective binding through one shared Gson instance.
+ *
+ * A class may register its decoder with {@link #DEFAULT} in its static
+ * initializer; the registry initializes a class before falling back.
+ */
+public class DecoderRegistry {
+
+    /**
+     * Registry shared by all helpers
+     */
+    public static final DecoderRegistry DEFAULT = new DecoderRegistry(new Gson());
+
+    private final Gson gson;
+    private final ConcurrentMap<Type, ObjectDecoder<?>> decoders =
+            new ConcurrentHashMap<Type, ObjectDecoder<?>>();
+
+    /**
+     * Object Constructor
+     * @param gson used for types without a registered decoder
+     */
+    public DecoderRegistry(Gson gson) {
+        this.gson = gson;
+    }
+
+    /**
+     * Registers the decoder of a type, replacing any previous one
+     * @param type
+     * @param decoder
+     * @return this registry for method chaining
+     */
+    public <T> DecoderRegistry register(Class<T> type, ObjectDecoder<T> decoder) {
+        decoders.put(type, decoder);
+        return this;
+    }
+
+    /**
+     * Gets the decoder of a type
+     * @param type
+     * @return the registered decoder, or a reflective one created once
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ObjectDecoder<T> get(Type type) {
+        ObjectDecoder<?> decoder = decoders.get(type);
+        if (decoder == null && type instanceof Class) {
+            initialize((Class<?>) type);
+            decoder = decoders.get(type);
+        }
+        if (decoder == null) {
+            ObjectDecoder<?> created = new GsonObjectDecoder<T>(gson, type);
+            decoder = decoders.putIfAbsent(type, created);
+            if (decoder == null) {
+                decoder = created;
+            }
+        }
+        return (ObjectDecoder<T>) decoder;
+    }
+
+    /**
+     * Runs the static initializer of a class, which may register a decoder
+     */
+    private static void initialize(Class<?> type) {
+        if (type.isPrimitive()) {
+            return;
+        }
+        try {
+            Class.forName(type.getName(), true, type.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            // not loadable by name, e.g. a hidden class: use Gson
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.stream;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Decodes values with Gson's reflective binding
+ * @param <T> decoded type
+ */
+public class GsonObjectDecoder<T> implements ObjectDecoder<T> {
+
+    private final Gson gson;
+    private final Type type;
+
+    /**
+     * Object Constructor
+     * @param gson
+     * @param type
+     */
+    public GsonObjectDecoder(Gson gson, Type type) {
+        this.gson = gson;
+        this.type = type;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T decode(JsonReader reader) throws IOException {
+        return gson.<T>fromJson(reader, type);
+    }
+}
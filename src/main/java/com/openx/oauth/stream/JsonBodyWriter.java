@@ -0,0 +1,31 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.stream;
+
+import java.io.IOException;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes a request body straight to the connection.
+ *
+ * The writer may be called more than once if the request is sent again,
+ * so it must produce the same document every time.
+ */
+public interface JsonBodyWriter {
+
+    /**
+     * @param writer positioned before the top-level value
+     * @throws IOException
+     */
+    void write(JsonWriter writer) throws IOException;
+}
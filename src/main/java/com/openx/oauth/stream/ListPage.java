@@ -0,0 +1,115 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.stream;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonPrimitive;
+
+/**
+ * One decoded page of a v2 list response
+ * @param <T> element type
+ */
+public class ListPage<T> {
+
+    private final List<T> objects;
+    private final long totalCount;
+    private final long limit;
+    private final Boolean hasMore;
+
+    private ListPage(List<T> objects, long totalCount, long limit, Boolean hasMore) {
+        this.objects = objects;
+        this.totalCount = totalCount;
+        this.limit = limit;
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * Decodes a page body
+     * @param body
+     * @param decoder
+     * @return ListPage
+     */
+    public static <T> ListPage<T> parse(String body, ObjectDecoder<T> decoder) {
+        List<T> objects = new ArrayList<T>();
+        OX3ObjectIterator<T> it = new OX3ObjectIterator<T>(new StringReader(body), decoder);
+        while (it.hasNext()) {
+            objects.add(it.next());
+        }
+
+        Map<String, JsonPrimitive> metadata = it.getMetadata();
+        JsonPrimitive total = metadata.get("total_count");
+        JsonPrimitive limit = metadata.get("limit");
+        JsonPrimitive more = metadata.get("has_more");
+        return new ListPage<T>(objects,
+                total != null ? total.getAsLong() : -1,
+                limit != null ? limit.getAsLong() : -1,
+                more != null ? more.getAsBoolean() : null);
+    }
+
+    /**
+     * @return the objects of this page
+     */
+    public List<T> getObjects() {
+        return objects;
+    }
+
+    /**
+     * @return the total_count reported by the server, or -1 if absent
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return the limit echoed by the server, or -1 if absent
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * The number of objects the server puts on a page, which is less than
+     * the requested limit if the server caps it. Taken from the echoed
+     * limit, or from the size of a page that is short although has_more
+     * says more follow.
+     * @param pageSize the limit the page was requested with
+     * @return the effective page size, at most pageSize
+     */
+    public int getPageLimit(int pageSize) {
+        int effective = pageSize;
+        if (limit > 0 && limit < effective) {
+            effective = (int) limit;
+        }
+        if (Boolean.TRUE.equals(hasMore) && !objects.isEmpty()
+                && objects.size() < effective) {
+            effective = objects.size();
+        }
+        return effective;
+    }
+
+    /**
+     * Whether another page follows. Uses has_more when the server sent it,
+     * otherwise assumes more pages as long as this one was full.
+     * @param pageSize the limit the page was requested with
+     * @return true if another page may follow
+     */
+    public boolean hasMore(int pageSize) {
+        if (objects.isEmpty()) {
+            return false;
+        }
+        return hasMore != null ? hasMore : objects.size() >= getPageLimit(pageSize);
+    }
+}
@@ -0,0 +1,241 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.stream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Pull-parses the "objects" array of an OX3 list response and yields its
+ * elements one by one, so the body is never held in memory as a whole.
+ *
+ * A response whose top level is an array (v2 single-object responses) is
+ * streamed element by element as well. Top-level scalar fields of a list
+ * response (total_count, offset, limit, ...) are kept and exposed through
+ * {@link #getMetadata()}; nested values other than "objects" are skipped.
+ *
+ * The iterator closes the underlying stream once it is exhausted. Close it
+ * explicitly if you stop early; the resource passed in is then closed
+ * first, so an HTTP response is aborted rather than drained.
+ * @param <T> element type
+ */
+public class OX3ObjectIterator<T> implements Iterator<T>, Closeable {
+
+    private static final String OBJECTS = "objects";
+
+    private final JsonReader reader;
+    private final ObjectDecoder<T> decoder;
+    private final Closeable resource;
+    private final Map<String, JsonPrimitive> metadata;
+    private boolean wrapped;
+    private boolean started;
+    private boolean exhausted;
+    private boolean closed;
+
+    /**
+     * Object Constructor
+     * @param in the response body
+     * @param decoder decodes each element
+     */
+    public OX3ObjectIterator(Reader in, ObjectDecoder<T> decoder) {
+        this(in, decoder, null);
+    }
+
+    /**
+     * Object Constructor
+     * @param in the response body
+     * @param decoder decodes each element
+     * @param resource closed together with the body, may be null
+     */
+    public OX3ObjectIterator(Reader in, ObjectDecoder<T> decoder, Closeable resource) {
+        this.reader = new JsonReader(in);
+        this.decoder = decoder;
+        this.resource = resource;
+        this.metadata = new HashMap<String, JsonPrimitive>();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        try {
+            if (!started) {
+                started = true;
+                if (!openArray()) {
+                    exhausted = true;
+                    close();
+                    return false;
+                }
+            }
+            if (reader.hasNext()) {
+                return true;
+            }
+            reader.endArray();
+            if (wrapped) {
+                readFields();
+                reader.endObject();
+            }
+            exhausted = true;
+            close();
+            return false;
+        } catch (IOException ex) {
+            closeQuietly();
+            throw new JsonIOException(ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return decoder.decode(reader);
+        } catch (IOException ex) {
+            closeQuietly();
+            throw new JsonIOException(ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Top-level scalar fields of the response seen so far. Fields that
+     * follow the "objects" array are only available once iteration is done.
+     * @return field name to value
+     */
+    public Map<String, JsonPrimitive> getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * Wraps this iterator in a sequential Stream that closes it on close
+     * @return Stream
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::closeQuietly);
+    }
+
+    /**
+     * Closes the underlying stream
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (exhausted || resource == null) {
+            try {
+                reader.close();
+            } finally {
+                if (resource != null) {
+                    resource.close();
+                }
+            }
+            return;
+        }
+        resource.close();
+        try {
+            reader.close();
+        } catch (IOException ex) {
+            // the connection was aborted with the resource
+        }
+    }
+
+    /**
+     * Positions the reader inside the objects array
+     * @return false if the response holds no array to stream
+     */
+    private boolean openArray() throws IOException {
+        if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+            reader.beginArray();
+            return true;
+        }
+        wrapped = true;
+        reader.beginObject();
+        if (readFields()) {
+            reader.beginArray();
+            return true;
+        }
+        reader.endObject();
+        return false;
+    }
+
+    /**
+     * Reads top-level fields up to the objects array
+     * @return true if the reader stopped in front of the objects array
+     */
+    private boolean readFields() throws IOException {
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            JsonToken token = reader.peek();
+            if (OBJECTS.equals(name) && token == JsonToken.BEGIN_ARRAY) {
+                return true;
+            }
+            switch (token) {
+                case STRING:
+                    metadata.put(name, new JsonPrimitive(reader.nextString()));
+                    break;
+                case NUMBER:
+                    metadata.put(name, new JsonPrimitive(new BigDecimal(reader.nextString())));
+                    break;
+                case BOOLEAN:
+                    metadata.put(name, new JsonPrimitive(reader.nextBoolean()));
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        return false;
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException ex) {
+            // nothing left to release
+        }
+    }
+}
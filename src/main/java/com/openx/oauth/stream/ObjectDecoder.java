@@ -0,0 +1,46 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.stream;
+
+import java.io.IOException;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Decodes one value from a JSON stream.
+ *
+ * Implementations must consume exactly one value from the reader.
+ * @param <T> decoded type
+ */
+public interface ObjectDecoder<T> {
+
+    /**
+     * Decodes the next value of the reader
+     * @param reader
+     * @return the decoded value
+     * @throws IOException
+     */
+    T decode(JsonReader reader) throws IOException;
+
+    /**
+     * Decodes values into a {@link JsonElement} tree
+     */
+    ObjectDecoder<JsonElement> JSON_ELEMENT = new ObjectDecoder<JsonElement>() {
+
+        @Override
+        public JsonElement decode(JsonReader reader) throws IOException {
+            return new JsonParser().parse(reader);
+        }
+    };
+}
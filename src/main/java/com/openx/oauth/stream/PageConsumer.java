@@ -0,0 +1,28 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.stream;
+
+import java.util.List;
+
+/**
+ * Receives the pages of a crawl. Always called from the crawling thread.
+ * @param <T> element type
+ */
+public interface PageConsumer<T> {
+
+    /**
+     * Handles one page
+     * @param offset the offset the page was requested at
+     * @param objects the objects of the page
+     */
+    void onPage(long offset, List<T> objects);
+}
@@ -0,0 +1,28 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.stream;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Fetches one page of a list endpoint
+ */
+public interface PageSource {
+
+    /**
+     * Starts fetching the page at the given offset
+     * @param offset
+     * @param limit
+     * @return future completed with the raw page body
+     */
+    CompletableFuture<String> fetch(long offset, int limit);
+}
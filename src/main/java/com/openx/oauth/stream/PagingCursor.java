@@ -0,0 +1,183 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.stream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Iterates over every object of a v2 list endpoint, following the
+ * offset/limit paging metadata ("has_more", "total_count").
+ *
+ * While the caller consumes one page, up to prefetch further pages are
+ * already being fetched on the non-blocking client. Pages are requested at
+ * fixed offsets, so with a deep prefetch a few requests past the last page
+ * may be issued before the end is known; those are cancelled. If the server
+ * returns fewer objects per page than pageSize (it caps the limit), the
+ * pages requested ahead are cancelled and paging continues with the
+ * server's page size, so no objects are skipped.
+ * @param <T> element type
+ */
+public class PagingCursor<T> implements Iterator<T>, Closeable {
+
+    private final PageSource source;
+    private final ObjectDecoder<T> decoder;
+    private final int prefetch;
+    private final Deque<CompletableFuture<String>> inFlight;
+    private final Deque<Long> offsets;
+    private Iterator<T> current;
+    private int limit;
+    private long nextOffset;
+    private long totalCount;
+    private boolean lastPageSeen;
+    private boolean closed;
+
+    /**
+     * Object Constructor
+     * @param source fetches the pages
+     * @param decoder decodes each object
+     * @param pageSize the limit sent with the page requests
+     * @param prefetch number of pages fetched ahead of the one being consumed
+     */
+    public PagingCursor(PageSource source, ObjectDecoder<T> decoder, int pageSize,
+            int prefetch) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        if (prefetch < 0) {
+            throw new IllegalArgumentException("prefetch must not be negative");
+        }
+        this.source = source;
+        this.decoder = decoder;
+        this.prefetch = prefetch;
+        this.inFlight = new ArrayDeque<CompletableFuture<String>>();
+        this.offsets = new ArrayDeque<Long>();
+        this.limit = pageSize;
+        this.current = Collections.<T>emptyList().iterator();
+        this.totalCount = -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (closed) {
+                return false;
+            }
+            fill(Math.max(1, prefetch));
+            if (inFlight.isEmpty()) {
+                return false;
+            }
+            current = readPage(offsets.poll(), inFlight.poll()).iterator();
+            fill(prefetch);
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * The total_count reported by the server
+     * @return the total, or -1 if no page has reported it yet
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Cancels the pages that are still being fetched
+     */
+    @Override
+    public void close() {
+        closed = true;
+        cancelInFlight();
+        current = Collections.<T>emptyList().iterator();
+    }
+
+    /**
+     * Requests further pages until target pages are in flight
+     * @param target
+     */
+    private void fill(int target) {
+        while (!closed && !lastPageSeen && inFlight.size() < target
+                && (totalCount < 0 || nextOffset < totalCount)) {
+            inFlight.add(source.fetch(nextOffset, limit));
+            offsets.add(nextOffset);
+            nextOffset += limit;
+        }
+    }
+
+    private List<T> readPage(long offset, CompletableFuture<String> page) {
+        String body;
+        try {
+            body = page.join();
+        } catch (CompletionException ex) {
+            close();
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw new UncheckedIOException((IOException) cause);
+            }
+            throw ex;
+        }
+
+        ListPage<T> decoded = ListPage.parse(body, decoder);
+        if (decoded.getTotalCount() >= 0) {
+            totalCount = decoded.getTotalCount();
+        }
+        if (!decoded.hasMore(limit)) {
+            lastPageSeen = true;
+            cancelInFlight();
+        } else if (decoded.getPageLimit(limit) < limit) {
+            // the server caps the limit; refetch the pages requested past it
+            limit = decoded.getPageLimit(limit);
+            cancelInFlight();
+            nextOffset = offset + limit;
+        }
+        return decoded.getObjects();
+    }
+
+    private void cancelInFlight() {
+        for (CompletableFuture<String> page : inFlight) {
+            page.cancel(true);
+        }
+        inFlight.clear();
+        offsets.clear();
+    }
+}
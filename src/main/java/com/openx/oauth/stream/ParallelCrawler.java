@@ -0,0 +1,177 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.stream;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Crawls a whole v2 list endpoint with several pages in flight at once.
+ *
+ * The first page is fetched alone to learn total_count; the remaining
+ * offsets are then fetched concurrently with at most parallelism requests
+ * outstanding. Pages are handed to a {@link PageConsumer} either in offset
+ * order or as soon as they arrive. If the server does not report a total,
+ * the crawl falls back to an ordered window that stops at the last page.
+ * The remaining pages are requested at the page size of the first page, so
+ * a server that caps the limit below pageSize leaves no gaps.
+ * @param <T> element type
+ */
+public class ParallelCrawler<T> {
+
+    private final PageSource source;
+    private final ObjectDecoder<T> decoder;
+    private final int pageSize;
+    private final int parallelism;
+
+    /**
+     * Object Constructor
+     * @param source fetches the pages
+     * @param decoder decodes each object
+     * @param pageSize the limit sent with the page requests
+     * @param parallelism maximum number of page requests in flight
+     */
+    public ParallelCrawler(PageSource source, ObjectDecoder<T> decoder, int pageSize,
+            int parallelism) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.source = source;
+        this.decoder = decoder;
+        this.pageSize = pageSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Runs the crawl, stopping at the first failed page
+     * @param consumer receives every page
+     * @param ordered deliver pages in offset order
+     * @return number of objects delivered
+     * @throws IOException if a page could not be fetched
+     * @throws InterruptedException
+     */
+    public long crawl(PageConsumer<T> consumer, boolean ordered)
+            throws IOException, InterruptedException {
+        ListPage<T> first = ListPage.parse(await(source.fetch(0, pageSize)), decoder);
+        consumer.onPage(0, first.getObjects());
+        long delivered = first.getObjects().size();
+        if (!first.hasMore(pageSize)) {
+            return delivered;
+        }
+
+        // the offsets are fixed ahead, so they must step by what the server
+        // really puts on a page
+        int limit = first.getPageLimit(pageSize);
+        long total = first.getTotalCount();
+        if (ordered || total < 0) {
+            return delivered + crawlOrdered(consumer, total, limit);
+        }
+        return delivered + crawlUnordered(consumer, total, limit);
+    }
+
+    /**
+     * Keeps a sliding window of requests and delivers from its head
+     */
+    private long crawlOrdered(PageConsumer<T> consumer, long total, int limit)
+            throws IOException, InterruptedException {
+        long end = total >= 0 ? total : Long.MAX_VALUE;
+        Deque<Long> offsets = new ArrayDeque<Long>();
+        Deque<CompletableFuture<String>> window = new ArrayDeque<CompletableFuture<String>>();
+        long next = limit;
+        long delivered = 0;
+        boolean lastPageSeen = false;
+        try {
+            while (true) {
+                while (!lastPageSeen && window.size() < parallelism && next < end) {
+                    window.add(source.fetch(next, limit));
+                    offsets.add(next);
+                    next += limit;
+                }
+                if (window.isEmpty()) {
+                    return delivered;
+                }
+                ListPage<T> page = ListPage.parse(await(window.poll()), decoder);
+                consumer.onPage(offsets.poll(), page.getObjects());
+                delivered += page.getObjects().size();
+                if (!page.hasMore(limit)) {
+                    lastPageSeen = true;
+                    cancel(window);
+                    window.clear();
+                }
+            }
+        } finally {
+            cancel(window);
+        }
+    }
+
+    /**
+     * Delivers pages in completion order
+     */
+    private long crawlUnordered(PageConsumer<T> consumer, long total, int limit)
+            throws IOException, InterruptedException {
+        BlockingQueue<Long> done = new LinkedBlockingQueue<Long>();
+        Map<Long, CompletableFuture<String>> inFlight =
+                new HashMap<Long, CompletableFuture<String>>();
+        long next = limit;
+        long delivered = 0;
+        try {
+            while (next < total || !inFlight.isEmpty()) {
+                while (inFlight.size() < parallelism && next < total) {
+                    final long offset = next;
+                    CompletableFuture<String> page = source.fetch(offset, limit);
+                    inFlight.put(offset, page);
+                    page.whenComplete((body, error) -> done.add(offset));
+                    next += limit;
+                }
+                Long offset = done.take();
+                ListPage<T> page = ListPage.parse(await(inFlight.remove(offset)), decoder);
+                consumer.onPage(offset, page.getObjects());
+                delivered += page.getObjects().size();
+            }
+            return delivered;
+        } finally {
+            cancel(inFlight.values());
+        }
+    }
+
+    private static String await(CompletableFuture<String> page)
+            throws IOException, InterruptedException {
+        try {
+            return page.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } catch (CancellationException ex) {
+            throw new IOException("page request was cancelled", ex);
+        }
+    }
+
+    private static void cancel(Iterable<CompletableFuture<String>> pages) {
+        for (CompletableFuture<String> page : pages) {
+            page.cancel(true);
+        }
+    }
+}
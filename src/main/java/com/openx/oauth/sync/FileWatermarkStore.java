@@ -0,0 +1,83 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.sync;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Keeps watermarks in a properties file. Every save writes a temporary
+ * file and renames it over the old one, so a crash never leaves a
+ * half-written file behind.
+ */
+public class FileWatermarkStore implements WatermarkStore {
+
+    private final File file;
+
+    /**
+     * Object Constructor
+     * @param file
+     */
+    public FileWatermarkStore(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public synchronized String load(String entityType) throws IOException {
+        return read().getProperty(entityType);
+    }
+
+    @Override
+    public synchronized void save(String entityType, String watermark) throws IOException {
+        Properties watermarks = read();
+        if (watermark == null) {
+            watermarks.remove(entityType);
+        } else {
+            watermarks.setProperty(entityType, watermark);
+        }
+        File dir = file.getAbsoluteFile().getParentFile();
+        File tmp = File.createTempFile("." + file.getName() + "-", ".tmp", dir);
+        try {
+            FileOutputStream out = new FileOutputStream(tmp);
+            try {
+                watermarks.store(out, "OX3 sync watermarks");
+                out.flush();
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    private Properties read() throws IOException {
+        Properties watermarks = new Properties();
+        if (file.exists()) {
+            InputStream in = new FileInputStream(file);
+            try {
+                watermarks.load(in);
+            } finally {
+                in.close();
+            }
+        }
+        return watermarks;
+    }
+}
@@ -0,0 +1,57 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.sync;
+
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+import com.openx.ox3.entities.IntEntityIndex;
+
+/**
+ * Applies synced changes to an {@link IntEntityIndex}, one table copy per
+ * page of upserts and one per page of tombstones
+ * @param <T> entity type
+ */
+public class IndexSyncTarget<T> implements SyncTarget<T> {
+
+    private final IntEntityIndex<T> index;
+    private final ToIntFunction<? super T> key;
+
+    /**
+     * Object Constructor
+     * @param index
+     * @param key the key the index uses
+     */
+    public IndexSyncTarget(IntEntityIndex<T> index, ToIntFunction<? super T> key) {
+        this.index = index;
+        this.key = key;
+    }
+
+    @Override
+    public void apply(List<T> upserts, List<T> tombstones) {
+        if (!upserts.isEmpty()) {
+            index.putAll(upserts);
+        }
+        if (!tombstones.isEmpty()) {
+            int[] keys = new int[tombstones.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = key.applyAsInt(tombstones.get(i));
+            }
+            index.removeAll(keys);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return index.size() == 0;
+    }
+}
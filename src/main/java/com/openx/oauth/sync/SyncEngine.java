@@ -0,0 +1,218 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.sync;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+import com.openx.oauth.client.Helper;
+import com.openx.oauth.stream.DecoderRegistry;
+import com.openx.oauth.stream.ObjectDecoder;
+import com.openx.oauth.stream.PagingCursor;
+import com.openx.ox3.entities.OX3Account;
+
+/**
+ * Keeps a local replica of one entity type up to date by fetching only the
+ * objects modified since the last sync.
+ *
+ * The watermark is saved only after a cycle has been applied completely,
+ * so a failed cycle is simply repeated. The filter is inclusive: objects
+ * modified in the same second as the watermark are fetched again rather
+ * than missed, which is harmless because upserts are idempotent. Objects
+ * flagged deleted are passed to the replica as tombstones.
+ *
+ * Objects modified while a cycle pages through the list join the filtered
+ * list and shift it, so a cycle may miss objects modified after it
+ * started. The watermark is therefore held back one cycle: the next cycle
+ * starts from the newest modified_date seen by the previous one, which
+ * precedes the start of this one, and fetches the changes made during this
+ * cycle again. This relies on the list being in an order that modifying
+ * an object does not change, such as by id.
+ *
+ * If the replica reports that it is empty, e.g. because it only lives in
+ * memory and the process restarted, the cycle loads every object whatever
+ * the saved watermark.
+ * @param <T> entity type
+ */
+public class SyncEngine<T> {
+
+    private static final Logger logger = Logger.getLogger(SyncEngine.class.getName());
+    private static final String NEWEST_SUFFIX = ".newest";
+
+    private final Helper helper;
+    private final String domain;
+    private final String path;
+    private final String entityType;
+    private final ObjectDecoder<T> decoder;
+    private final Function<? super T, String> modifiedDate;
+    private final Predicate<? super T> deleted;
+    private final WatermarkStore watermarks;
+    private int pageSize = 500;
+    private String filterFormat = "modified_since=%s";
+
+    /**
+     * Object Constructor
+     * @param helper logged in helper
+     * @param domain
+     * @param path
+     * @param entityType e.g. "account", also the watermark key
+     * @param decoder
+     * @param modifiedDate reads the modified_date of an entity
+     * @param deleted tells whether an entity is a tombstone
+     * @param watermarks
+     */
+    public SyncEngine(Helper helper, String domain, String path, String entityType,
+            ObjectDecoder<T> decoder, Function<? super T, String> modifiedDate,
+            Predicate<? super T> deleted, WatermarkStore watermarks) {
+        this.helper = helper;
+        this.domain = domain;
+        this.path = path;
+        this.entityType = entityType;
+        this.decoder = decoder;
+        this.modifiedDate = modifiedDate;
+        this.deleted = deleted;
+        this.watermarks = watermarks;
+    }
+
+    /**
+     * Creates a sync engine for accounts
+     * @param helper logged in helper
+     * @param domain
+     * @param path
+     * @param watermarks
+     * @return SyncEngine
+     */
+    public static SyncEngine<OX3Account> forAccounts(Helper helper, String domain,
+            String path, WatermarkStore watermarks) {
+        return new SyncEngine<OX3Account>(helper, domain, path, "account",
+                DecoderRegistry.DEFAULT.<OX3Account>get(OX3Account.class),
+                OX3Account::getModified_date, account -> account.getDeleted() != 0,
+                watermarks);
+    }
+
+    /**
+     * Configures the objects requested and applied per page
+     * @param pageSize
+     * @return this engine for method chaining
+     */
+    public SyncEngine<T> pageSize(int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * Configures the query string selecting objects modified at or after
+     * the watermark
+     * @param filterFormat format with one %s for the url-encoded watermark
+     * @return this engine for method chaining
+     */
+    public SyncEngine<T> filter(String filterFormat) {
+        this.filterFormat = filterFormat;
+        return this;
+    }
+
+    /**
+     * Runs one sync cycle. The first cycle loads every object.
+     * @param target the replica
+     * @return number of objects applied
+     * @throws IOException
+     */
+    public long sync(SyncTarget<T> target) throws IOException {
+        String watermark = watermarks.load(entityType);
+        if (watermark != null && target.isEmpty()) {
+            logger.info("replica of " + entityType + " is empty, loading every object");
+            watermark = null;
+        }
+        String params = watermark == null ? null
+                : String.format(filterFormat, URLEncoder.encode(watermark, "UTF-8"));
+        String newest = null;
+        long applied = 0;
+        List<T> upserts = new ArrayList<T>();
+        List<T> tombstones = new ArrayList<T>();
+        try (PagingCursor<T> cursor = helper.paginateOX3Api(domain, path, entityType,
+                params, pageSize, 1, decoder)) {
+            while (cursor.hasNext()) {
+                T entity = cursor.next();
+                String modified = modifiedDate.apply(entity);
+                newest = max(newest, modified);
+                (deleted.test(entity) ? tombstones : upserts).add(entity);
+                applied++;
+                if (upserts.size() + tombstones.size() >= pageSize) {
+                    target.apply(upserts, tombstones);
+                    upserts = new ArrayList<T>();
+                    tombstones = new ArrayList<T>();
+                }
+            }
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        if (!upserts.isEmpty() || !tombstones.isEmpty()) {
+            target.apply(upserts, tombstones);
+        }
+        String previous = watermarks.load(entityType + NEWEST_SUFFIX);
+        String newWatermark;
+        if (watermark == null) {
+            // a full load misses nothing: objects keep their place in the
+            // unfiltered list and new ones are added at its end
+            newWatermark = newest;
+        } else {
+            newWatermark = max(watermark, previous);
+            newest = max(newest, newWatermark);
+        }
+        // saved first, so a crash in between leaves the older watermark
+        if (newest != null && !newest.equals(previous)) {
+            watermarks.save(entityType + NEWEST_SUFFIX, newest);
+        }
+        if (newWatermark != null && !newWatermark.equals(watermarks.load(entityType))) {
+            watermarks.save(entityType, newWatermark);
+        }
+        logger.fine("synced " + applied + " " + entityType + " objects, watermark "
+                + newWatermark);
+        return applied;
+    }
+
+    private static String max(String a, String b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || a.compareTo(b) >= 0 ? a : b;
+    }
+
+    /**
+     * @return the saved watermark, null before the first sync
+     * @throws IOException
+     */
+    public String getWatermark() throws IOException {
+        return watermarks.load(entityType);
+    }
+
+    /**
+     * Replaces the saved watermark, e.g. with the one of a snapshot the
+     * replica was restored from, so the next sync fetches the changes made
+     * since that snapshot
+     * @param watermark null makes the next sync a full load
+     * @throws IOException
+     */
+    public void setWatermark(String watermark) throws IOException {
+        watermarks.save(entityType + NEWEST_SUFFIX, watermark);
+        watermarks.save(entityType, watermark);
+    }
+}
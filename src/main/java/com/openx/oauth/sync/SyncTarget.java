@@ -0,0 +1,38 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.sync;
+
+import java.util.List;
+
+/**
+ * Local replica the sync engine applies changes to
+ * @param <T> entity type
+ */
+public interface SyncTarget<T> {
+
+    /**
+     * Applies one page of changes
+     * @param upserts new or modified entities
+     * @param tombstones entities deleted since the last sync
+     */
+    void apply(List<T> upserts, List<T> tombstones);
+
+    /**
+     * Tells whether the replica holds no objects, in which case the next
+     * sync loads every object instead of only the changes. Replicas that
+     * do not outlive the process must answer this truthfully.
+     * @return true if the replica is empty, false by default
+     */
+    default boolean isEmpty() {
+        return false;
+    }
+}
@@ -0,0 +1,34 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.sync;
+
+import java.io.IOException;
+
+/**
+ * Persists the sync watermark of each entity type
+ */
+public interface WatermarkStore {
+
+    /**
+     * @param entityType
+     * @return the stored watermark, or null if the type was never synced
+     * @throws IOException
+     */
+    String load(String entityType) throws IOException;
+
+    /**
+     * @param entityType
+     * @param watermark null forgets the type's watermark
+     * @throws IOException
+     */
+    void save(String entityType, String watermark) throws IOException;
+}
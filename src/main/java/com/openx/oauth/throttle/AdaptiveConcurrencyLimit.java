@@ -0,0 +1,127 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.throttle;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Concurrency limit adjusted by additive increase / multiplicative
+ * decrease: every successful call raises the limit by 1/limit (about one
+ * slot per round of calls), every throttled call multiplies it by the
+ * backoff ratio.
+ *
+ * Slots are handed out as futures so async callers never block a thread.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final Deque<CompletableFuture<Void>> waiters;
+    private double limit;
+    private int inFlight;
+
+    /**
+     * Object Constructor
+     * @param initialLimit
+     * @param minLimit the limit never drops below this
+     * @param maxLimit the limit never grows above this
+     * @param backoffRatio factor applied on throttling, between 0 and 1
+     */
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit,
+            double backoffRatio) {
+        if (minLimit <= 0 || minLimit > maxLimit) {
+            throw new IllegalArgumentException("need 0 < minLimit <= maxLimit");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoffRatio must be between 0 and 1");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.waiters = new ArrayDeque<CompletableFuture<Void>>();
+    }
+
+    /**
+     * Requests a slot
+     * @return future completed once the slot is granted; cancel it to give up
+     */
+    public CompletableFuture<Void> acquire() {
+        CompletableFuture<Void> slot = new CompletableFuture<Void>();
+        synchronized (this) {
+            if (inFlight < (int) limit && waiters.isEmpty()) {
+                inFlight++;
+                slot.complete(null);
+            } else {
+                waiters.add(slot);
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Returns a slot and adjusts the limit
+     * @param throttled true if the server pushed back on the call
+     */
+    public void release(boolean throttled) {
+        synchronized (this) {
+            if (throttled) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        }
+        abandon();
+    }
+
+    /**
+     * Returns a slot that was never used, leaving the limit as it is
+     */
+    public void abandon() {
+        List<CompletableFuture<Void>> granted = new ArrayList<CompletableFuture<Void>>();
+        synchronized (this) {
+            inFlight--;
+            while (inFlight < (int) limit && !waiters.isEmpty()) {
+                CompletableFuture<Void> next = waiters.poll();
+                if (!next.isDone()) {
+                    inFlight++;
+                    granted.add(next);
+                }
+            }
+        }
+        for (CompletableFuture<Void> slot : granted) {
+            if (!slot.complete(null)) {
+                // cancelled in the meantime
+                abandon();
+            }
+        }
+    }
+
+    /**
+     * @return the current limit
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @return slots currently held
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
@@ -0,0 +1,208 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.throttle;
+
+import java.util.Date;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.client.utils.DateUtils;
+
+/**
+ * Client-side throttle in front of the OX3 API. Every call first takes a
+ * token from a {@link TokenBucket}, then a slot from an
+ * {@link AdaptiveConcurrencyLimit}.
+ *
+ * When the server answers 429 or 503 the concurrency limit is cut and the
+ * bucket is paused for the Retry-After period (or a default pause), so all
+ * callers sharing the throttle back off together instead of hammering the
+ * API. Successful calls slowly grow the limit back.
+ *
+ * One instance may be shared by several Helpers talking to the same API.
+ */
+public class Throttle {
+
+    private static final ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "openx-throttle");
+                t.setDaemon(true);
+                return t;
+            });
+
+    private final TokenBucket bucket;
+    private final AdaptiveConcurrencyLimit limit;
+    private final long defaultPauseMillis;
+    private final AtomicLong throttledCount = new AtomicLong();
+
+    /**
+     * Object Constructor
+     * @param requestsPerSecond sustained request rate
+     * @param burst requests that may be sent at once after an idle period
+     * @param initialConcurrency starting concurrency limit
+     * @param maxConcurrency concurrency never grows above this
+     */
+    public Throttle(double requestsPerSecond, int burst, int initialConcurrency,
+            int maxConcurrency) {
+        this(new TokenBucket(requestsPerSecond, burst),
+                new AdaptiveConcurrencyLimit(initialConcurrency, 1, maxConcurrency, 0.5),
+                1000);
+    }
+
+    /**
+     * Object Constructor
+     * @param bucket
+     * @param limit
+     * @param defaultPauseMillis pause applied on 429/503 without Retry-After
+     */
+    public Throttle(TokenBucket bucket, AdaptiveConcurrencyLimit limit,
+            long defaultPauseMillis) {
+        this.bucket = bucket;
+        this.limit = limit;
+        this.defaultPauseMillis = defaultPauseMillis;
+    }
+
+    /**
+     * Blocks until the caller may send a request.
+     * Every successful acquire must be followed by one release.
+     * @throws InterruptedException
+     */
+    public void acquire() throws InterruptedException {
+        long wait = bucket.reserve();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        CompletableFuture<Void> slot = limit.acquire();
+        try {
+            slot.get();
+        } catch (InterruptedException e) {
+            if (!slot.cancel(false)) {
+                limit.abandon();
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #acquire()}. Cancelling the returned
+     * future gives the permit up.
+     * @return future completed once the caller may send a request
+     */
+    public CompletableFuture<Void> acquireAsync() {
+        final CompletableFuture<Void> permit = new CompletableFuture<Void>();
+        long wait = bucket.reserve();
+        if (wait > 0) {
+            timer.schedule(() -> takeSlot(permit), wait, TimeUnit.NANOSECONDS);
+        } else {
+            takeSlot(permit);
+        }
+        return permit;
+    }
+
+    /**
+     * Returns a permit and feeds the outcome of the call back into the
+     * throttle. A call that failed without response leaves the limit as it
+     * is: it tells nothing about the load the server accepts, and counting
+     * it as a success would grow the limit while the host is failing.
+     * @param status HTTP status, or -1 if the call failed without response
+     * @param retryAfter value of the Retry-After header, may be null
+     */
+    public void release(int status, String retryAfter) {
+        if (status < 0) {
+            limit.abandon();
+            return;
+        }
+        boolean throttled = isThrottled(status);
+        if (throttled) {
+            throttledCount.incrementAndGet();
+            long pause = parseRetryAfter(retryAfter);
+            bucket.pause(pause >= 0 ? pause : defaultPauseMillis, TimeUnit.MILLISECONDS);
+        }
+        limit.release(throttled);
+    }
+
+    /**
+     * Returns a permit that was never used to send a request
+     */
+    public void abandon() {
+        limit.abandon();
+    }
+
+    /**
+     * @param status
+     * @return true if the status means the server asked us to slow down
+     */
+    public static boolean isThrottled(int status) {
+        return status == 429 || status == 503;
+    }
+
+    /**
+     * Parses a Retry-After header given either as delta-seconds or as an
+     * HTTP date
+     * @param retryAfter
+     * @return the delay in milliseconds, or -1 if absent or unparseable
+     */
+    public static long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null || retryAfter.trim().isEmpty()) {
+            return -1;
+        }
+        String value = retryAfter.trim();
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parseDate(value);
+            return date == null ? -1 : Math.max(0, date.getTime() - System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * @return the current concurrency limit
+     */
+    public int getConcurrencyLimit() {
+        return limit.getLimit();
+    }
+
+    /**
+     * @return requests currently holding a permit
+     */
+    public int getInFlight() {
+        return limit.getInFlight();
+    }
+
+    /**
+     * @return number of 429/503 responses seen
+     */
+    public long getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    private void takeSlot(final CompletableFuture<Void> permit) {
+        CompletableFuture<Void> slot = limit.acquire();
+        slot.whenComplete((v, error) -> {
+            if (error == null && !permit.complete(null)) {
+                // caller gave up while waiting
+                limit.abandon();
+            }
+        });
+        permit.whenComplete((v, error) -> {
+            if (error instanceof CancellationException) {
+                slot.cancel(false);
+            }
+        });
+    }
+}
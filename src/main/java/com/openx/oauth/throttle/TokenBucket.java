@@ -0,0 +1,83 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.throttle;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiter. Callers reserve a token and are told how long
+ * to wait for it, so waiting can happen outside the limiter (blocking or
+ * scheduled).
+ */
+public class TokenBucket {
+
+    private final double permitsPerNano;
+    private final double burst;
+    private double tokens;
+    private long refilledAt;
+
+    /**
+     * Object Constructor
+     * @param permitsPerSecond sustained rate
+     * @param burst tokens that may accumulate while idle
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        if (burst <= 0) {
+            throw new IllegalArgumentException("burst must be positive");
+        }
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.tokens = burst;
+        this.refilledAt = System.nanoTime();
+    }
+
+    /**
+     * Takes one token, possibly ahead of time
+     * @return nanoseconds the caller must wait before using it
+     */
+    public synchronized long reserve() {
+        long now = System.nanoTime();
+        refill(now);
+        tokens -= 1;
+        long wait = refilledAt - now;
+        if (tokens < 0) {
+            wait += (long) Math.ceil(-tokens / permitsPerNano);
+        }
+        return Math.max(0, wait);
+    }
+
+    /**
+     * Hands out no tokens before the given delay has passed, e.g. after the
+     * server answered with Retry-After
+     * @param delay
+     * @param unit
+     */
+    public synchronized void pause(long delay, TimeUnit unit) {
+        long now = System.nanoTime();
+        refill(now);
+        long until = now + unit.toNanos(delay);
+        if (until > refilledAt) {
+            refilledAt = until;
+            tokens = Math.min(tokens, 0);
+        }
+    }
+
+    private void refill(long now) {
+        if (now > refilledAt) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * permitsPerNano);
+            refilledAt = now;
+        }
+    }
+}
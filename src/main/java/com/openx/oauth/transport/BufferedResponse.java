@@ -0,0 +1,90 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.transport;
+
+import java.io.IOException;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Status, headers and body of a response that has been read completely,
+ * so its connection is already back in the pool.
+ */
+public class BufferedResponse {
+
+    private final int status;
+    private final Header[] headers;
+    private final String body;
+
+    /**
+     * Object Constructor
+     * @param status
+     * @param headers
+     * @param body the body, or null if there was none
+     */
+    public BufferedResponse(int status, Header[] headers, String body) {
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    /**
+     * Reads the response completely, releasing its connection
+     * @param response
+     * @return BufferedResponse
+     * @throws IOException
+     */
+    public static BufferedResponse read(HttpResponse response) throws IOException {
+        HttpEntity entity = response.getEntity();
+        String body = entity != null ? EntityUtils.toString(entity) : null;
+        return new BufferedResponse(response.getStatusLine().getStatusCode(),
+                response.getAllHeaders(), body);
+    }
+
+    /**
+     * @return the HTTP status code
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the body, or null if there was none
+     */
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * @return all headers in the order received
+     */
+    public Header[] getHeaders() {
+        return headers.clone();
+    }
+
+    /**
+     * Gets the value of the first header with the given name
+     * @param name case-insensitive header name
+     * @return the value, or null if absent
+     */
+    public String getHeader(String name) {
+        for (Header header : headers) {
+            if (header.getName().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+}
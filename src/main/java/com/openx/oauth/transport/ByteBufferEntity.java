@@ -0,0 +1,96 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+/**
+ * Request body backed by the remaining bytes of a {@link ByteBuffer}.
+ * Heap buffers are written without copying; the buffer's position is
+ * never changed, so the entity can be sent again.
+ */
+public class ByteBufferEntity extends AbstractHttpEntity {
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Object Constructor
+     * @param buffer
+     * @param contentType
+     */
+    public ByteBufferEntity(ByteBuffer buffer, ContentType contentType) {
+        this.buffer = buffer.duplicate();
+        if (contentType != null) {
+            setContentType(contentType.toString());
+        }
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public InputStream getContent() {
+        final ByteBuffer source = buffer.duplicate();
+        return new InputStream() {
+
+            @Override
+            public int read() {
+                return source.hasRemaining() ? source.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (!source.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(len, source.remaining());
+                source.get(b, off, n);
+                return n;
+            }
+        };
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        ByteBuffer source = buffer.duplicate();
+        if (source.hasArray()) {
+            out.write(source.array(), source.arrayOffset() + source.position(),
+                    source.remaining());
+        } else {
+            byte[] chunk = new byte[Math.min(8192, source.remaining())];
+            while (source.hasRemaining()) {
+                int n = Math.min(chunk.length, source.remaining());
+                source.get(chunk, 0, n);
+                out.write(chunk, 0, n);
+            }
+        }
+        out.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+}
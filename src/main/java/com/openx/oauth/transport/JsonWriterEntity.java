@@ -0,0 +1,79 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+
+import org.apache.http.Consts;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import com.google.gson.stream.JsonWriter;
+import com.openx.oauth.stream.JsonBodyWriter;
+
+/**
+ * JSON request body produced by a {@link JsonBodyWriter} while it is sent,
+ * using chunked transfer encoding, so the document never exists in memory
+ * as a whole.
+ */
+public class JsonWriterEntity extends AbstractHttpEntity {
+
+    private final JsonBodyWriter body;
+
+    /**
+     * Object Constructor
+     * @param body
+     */
+    public JsonWriterEntity(JsonBodyWriter body) {
+        this.body = body;
+        setContentType(ContentType.APPLICATION_JSON.toString());
+        setChunked(true);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    /**
+     * Only used by callers that cannot write to a stream; this buffers the
+     * whole document
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        writeTo(buffer);
+        return new ByteArrayInputStream(buffer.toByteArray());
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, Consts.UTF_8));
+        body.write(writer);
+        writer.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+}
@@ -0,0 +1,230 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import com.openx.oauth.builder.OpenXTransportBuilder;
+
+/**
+ * Long-lived, thread-safe HTTP transport backed by pooled connection
+ * managers. A single instance may be shared by any number of Helpers and
+ * threads; cookies are kept per call so sessions never leak between callers.
+ *
+ * Blocking calls use a classic connection pool, asynchronous calls use a
+ * non-blocking I/O reactor that is started on first use.
+ *
+ * Instances are created with {@link OpenXTransportBuilder}.
+ */
+public class OpenXHttpTransport implements Closeable {
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final PoolingNHttpClientConnectionManager asyncConnectionManager;
+    private final CloseableHttpAsyncClient asyncClient;
+    private final ScheduledExecutorService evictor;
+
+    /**
+     * Object Constructor
+     * @param connectionManager the pool backing the blocking client
+     * @param httpClient blocking client built on top of the pool
+     * @param asyncConnectionManager the pool backing the async client
+     * @param asyncClient non-blocking client built on top of the async pool
+     * @param idleTimeoutMillis idle connections older than this are evicted
+     */
+    public OpenXHttpTransport(PoolingHttpClientConnectionManager connectionManager,
+            CloseableHttpClient httpClient,
+            PoolingNHttpClientConnectionManager asyncConnectionManager,
+            CloseableHttpAsyncClient asyncClient,
+            long idleTimeoutMillis) {
+        this.connectionManager = connectionManager;
+        this.httpClient = httpClient;
+        this.asyncConnectionManager = asyncConnectionManager;
+        this.asyncClient = asyncClient;
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "openx-connection-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        this.evictor.scheduleWithFixedDelay(() -> evictIdleConnections(idleTimeoutMillis),
+                idleTimeoutMillis, idleTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Executes a request using the given cookie store for this call only.
+     *
+     * The caller must consume the entity or close the response so the
+     * connection goes back to the pool.
+     * @param request
+     * @param cookieStore cookies to send and update, may be null
+     * @return the response
+     * @throws IOException
+     */
+    public CloseableHttpResponse execute(HttpUriRequest request, CookieStore cookieStore)
+            throws IOException {
+        return httpClient.execute(request, createContext(cookieStore));
+    }
+
+    /**
+     * Executes a request and reads the whole response, so the connection is
+     * back in the pool when this returns.
+     * @param request
+     * @param cookieStore cookies to send and update, may be null
+     * @return the buffered response
+     * @throws IOException
+     */
+    public BufferedResponse executeBuffered(HttpUriRequest request, CookieStore cookieStore)
+            throws IOException {
+        CloseableHttpResponse response = execute(request, cookieStore);
+        try {
+            return BufferedResponse.read(response);
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Executes a request without blocking the calling thread.
+     *
+     * The response body is fully buffered before the future completes.
+     * Cancelling the returned future aborts the underlying exchange.
+     * @param request
+     * @param cookieStore cookies to send and update, may be null
+     * @return future completed with the response
+     */
+    public CompletableFuture<HttpResponse> executeAsync(HttpUriRequest request,
+            CookieStore cookieStore) {
+        if (!asyncClient.isRunning()) {
+            startAsyncClient();
+        }
+        final CompletableFuture<HttpResponse> result = new CompletableFuture<HttpResponse>();
+        final Future<HttpResponse> exchange = asyncClient.execute(request,
+                createContext(cookieStore), new FutureCallback<HttpResponse>() {
+
+            @Override
+            public void completed(HttpResponse response) {
+                result.complete(response);
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                result.completeExceptionally(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                result.cancel(false);
+            }
+        });
+        result.whenComplete((response, error) -> {
+            if (error instanceof CancellationException) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Executes a request without blocking and reads the whole response
+     * @param request
+     * @param cookieStore cookies to send and update, may be null
+     * @return future completed with the buffered response
+     */
+    public CompletableFuture<BufferedResponse> executeBufferedAsync(HttpUriRequest request,
+            CookieStore cookieStore) {
+        final CompletableFuture<HttpResponse> exchange = executeAsync(request, cookieStore);
+        CompletableFuture<BufferedResponse> result = exchange.thenApply(response -> {
+            try {
+                return BufferedResponse.read(response);
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+        });
+        result.whenComplete((response, error) -> {
+            if (error instanceof CancellationException) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns the blocking pool totals (leased, pending, available, max)
+     * @return PoolStats
+     */
+    public PoolStats getTotalStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Returns the async pool totals (leased, pending, available, max)
+     * @return PoolStats
+     */
+    public PoolStats getAsyncTotalStats() {
+        return asyncConnectionManager.getTotalStats();
+    }
+
+    /**
+     * Stops the evictor and closes every pooled connection
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        evictor.shutdownNow();
+        try {
+            httpClient.close();
+        } finally {
+            asyncClient.close();
+        }
+    }
+
+    private synchronized void startAsyncClient() {
+        if (!asyncClient.isRunning()) {
+            asyncClient.start();
+        }
+    }
+
+    private void evictIdleConnections(long idleTimeoutMillis) {
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+        asyncConnectionManager.closeExpiredConnections();
+        asyncConnectionManager.closeIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static HttpClientContext createContext(CookieStore cookieStore) {
+        HttpClientContext context = HttpClientContext.create();
+        if (cookieStore != null) {
+            context.setCookieStore(cookieStore);
+        }
+        return context;
+    }
+}
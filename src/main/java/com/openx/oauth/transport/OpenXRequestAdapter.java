@@ -0,0 +1,82 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.transport;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.http.Consts;
+import org.apache.http.Header;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.scribe.model.Verb;
+import org.scribe.utils.URLUtils;
+
+import com.openx.oauth.request.OpenXRequest;
+import com.openx.oauth.request.OpenXResponse;
+
+/**
+ * Sends signed {@link OpenXRequest}s, e.g. the OAuth token requests,
+ * through an {@link OpenXHttpTransport} instead of scribe's own
+ * connections, so they share the pool, timeouts and proxy of the API calls
+ */
+public final class OpenXRequestAdapter {
+
+    private static final ContentType FORM =
+            ContentType.create("application/x-www-form-urlencoded", Consts.UTF_8);
+
+    private OpenXRequestAdapter() {
+    }
+
+    /**
+     * Converts a request, its OAuth header must already be added
+     * @param request
+     * @return the equivalent HttpClient request
+     */
+    public static HttpUriRequest toHttpRequest(OpenXRequest request) {
+        RequestBuilder builder = RequestBuilder.create(request.getVerb().name())
+                .setUri(URLUtils.appendParametersToQueryString(request.getUrl(),
+                        request.getQueryStringParams()));
+        Map<String, String> headers = request.getHeaders();
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            builder.addHeader(header.getKey(), header.getValue());
+        }
+        if (request.getVerb() == Verb.PUT || request.getVerb() == Verb.POST) {
+            builder.setEntity(new StringEntity(request.getBodyContents(), FORM));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Sends a request through the transport. No cookies are kept between
+     * requests.
+     * @param transport
+     * @param request
+     * @return the response
+     * @throws IOException
+     */
+    public static OpenXResponse execute(OpenXHttpTransport transport, OpenXRequest request)
+            throws IOException {
+        BufferedResponse response = transport.executeBuffered(toHttpRequest(request),
+                new BasicCookieStore());
+        Map<String, String> headers = new HashMap<String, String>();
+        for (Header header : response.getHeaders()) {
+            headers.put(header.getName(), header.getValue());
+        }
+        return new OpenXResponse(response.getStatus(),
+                response.getBody() != null ? response.getBody() : "", headers);
+    }
+}
@@ -0,0 +1,76 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.transport;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+
+import com.openx.oauth.stream.JsonBodyWriter;
+
+/**
+ * Factory for JSON request bodies passed to the Helper's write calls
+ */
+public final class RequestBodies {
+
+    private RequestBodies() {
+    }
+
+    /**
+     * @param json
+     * @return body holding the string, UTF-8 encoded
+     */
+    public static HttpEntity json(String json) {
+        return new StringEntity(json, ContentType.APPLICATION_JSON);
+    }
+
+    /**
+     * @param body writes the document while the request is sent
+     * @return chunked body
+     */
+    public static HttpEntity json(JsonBodyWriter body) {
+        return new JsonWriterEntity(body);
+    }
+
+    /**
+     * The stream is read once while the request is sent, so the request is
+     * not retried
+     * @param in UTF-8 encoded JSON
+     * @return chunked body
+     */
+    public static HttpEntity json(InputStream in) {
+        InputStreamEntity entity = new InputStreamEntity(in, -1, ContentType.APPLICATION_JSON);
+        entity.setChunked(true);
+        return entity;
+    }
+
+    /**
+     * @param json UTF-8 encoded JSON, not copied
+     * @return body
+     */
+    public static HttpEntity json(byte[] json) {
+        return new ByteArrayEntity(json, ContentType.APPLICATION_JSON);
+    }
+
+    /**
+     * @param json remaining bytes are UTF-8 encoded JSON, not copied
+     * @return body
+     */
+    public static HttpEntity json(ByteBuffer json) {
+        return new ByteBufferEntity(json, ContentType.APPLICATION_JSON);
+    }
+}
@@ -13,15 +13,17 @@ package com.openx.oauthdemo;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonParser;
 import com.openx.oauth.client.Client;
+import com.openx.oauth.stream.DecoderRegistry;
+import com.openx.oauth.stream.OX3ObjectIterator;
 import com.openx.ox3.entities.OX3Account;
 
 /**
@@ -113,7 +115,6 @@ public class DemoV2 {
         // Read out the raw HTTP response body:
         logger.info("JSON response: " + json);
 
-        Gson gson = new Gson();
         // List of actual accounts in this response:
         JsonParser parser = new JsonParser();
         JsonArray accounts = parser.parse(json).getAsJsonObject().
@@ -139,12 +140,17 @@ public class DemoV2 {
 
             // In v2, all responses for single objects come in
             // the form of unary arrays:
-            OX3Account account = gson.fromJson(
-                    parser.parse(json).getAsJsonArray().get(0),
-                    OX3Account.class);
-
-            logger.warning("Account id: " + account.getId() + " name: "
-                    + account.getName());
+            try (OX3ObjectIterator<OX3Account> unary = new OX3ObjectIterator<OX3Account>(
+                    new StringReader(json),
+                    DecoderRegistry.DEFAULT.<OX3Account>get(OX3Account.class))) {
+                OX3Account account = unary.next();
+                logger.warning("Account id: " + account.getId() + " name: "
+                        + account.getName());
+            } catch (IOException ex) {
+                logger.warning("There was an error reading the account");
+                ex.printStackTrace(System.err);
+                System.exit(1);
+            }
         }
     }
 }
@@ -0,0 +1,297 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.ox3.entities;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Index of entities by an int key such as their id, without boxing.
+ *
+ * Entries live in an open-addressing table (linear probing over parallel
+ * int and Object arrays). Reads never lock and never allocate. Writes are
+ * copy-on-write: they build a new table and publish it at once, so readers
+ * always see a complete table, but every single {@link #put} or
+ * {@link #remove} costs O(size). Batch writes with {@link #putAll} and
+ * {@link #removeAll} to copy the table once per batch.
+ * @param <T> entity type
+ */
+public class IntEntityIndex<T> {
+
+    private final ToIntFunction<? super T> key;
+    private volatile Table table = new Table(8);
+
+    /**
+     * Object Constructor
+     * @param key extracts the key of an entity, e.g. OX3Account::getId
+     */
+    public IntEntityIndex(ToIntFunction<? super T> key) {
+        this.key = key;
+    }
+
+    /**
+     * Creates an index of accounts by id
+     * @return IntEntityIndex
+     */
+    public static IntEntityIndex<OX3Account> accountsById() {
+        return new IntEntityIndex<OX3Account>(OX3Account::getId);
+    }
+
+    /**
+     * @param key
+     * @return the entity, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int key) {
+        return (T) table.get(key);
+    }
+
+    /**
+     * @param key
+     * @return true if an entity has the key
+     */
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return number of entities
+     */
+    public int size() {
+        return table.size;
+    }
+
+    /**
+     * @return the entities at the time of the call, in no particular order
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> values() {
+        Table t = table;
+        List<T> values = new ArrayList<T>(t.size);
+        for (Object value : t.values) {
+            if (value != null) {
+                values.add((T) value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Adds an entity, replacing the one with the same key. Copies the whole
+     * table; use {@link #putAll} for more than a few entities.
+     * @param entity
+     */
+    public synchronized void put(T entity) {
+        Table copy = table.copy(table.size + 1);
+        copy.insert(key.applyAsInt(entity), entity);
+        table = copy;
+    }
+
+    /**
+     * Adds every entity of an iterator with a single copy of the table,
+     * e.g. straight from streamOX3Api
+     * @param entities
+     */
+    public synchronized void putAll(Iterator<? extends T> entities) {
+        Table copy = table.copy(table.size);
+        while (entities.hasNext()) {
+            T entity = entities.next();
+            if (copy.needsResize(copy.size + 1)) {
+                copy = copy.copy(copy.size + 1);
+            }
+            copy.insert(key.applyAsInt(entity), entity);
+        }
+        table = copy;
+    }
+
+    /**
+     * Adds every entity of a collection with a single copy of the table
+     * @param entities
+     */
+    public void putAll(Iterable<? extends T> entities) {
+        putAll(entities.iterator());
+    }
+
+    /**
+     * Removes the entity with the key. Copies the whole table; use
+     * {@link #removeAll} for more than a few keys.
+     * @param key
+     * @return the removed entity, or null if there was none
+     */
+    public synchronized T remove(int key) {
+        T removed = get(key);
+        if (removed != null) {
+            Table copy = table.copy(table.size);
+            copy.delete(key);
+            table = copy;
+        }
+        return removed;
+    }
+
+    /**
+     * Removes the entities with the given keys with a single copy of the
+     * table
+     * @param keys
+     * @return number of entities removed
+     */
+    public synchronized int removeAll(int[] keys) {
+        Table copy = null;
+        for (int key : keys) {
+            if (copy == null) {
+                if (get(key) == null) {
+                    continue;
+                }
+                copy = table.copy(table.size);
+            }
+            copy.delete(key);
+        }
+        if (copy == null) {
+            return 0;
+        }
+        int removed = table.size - copy.size;
+        table = copy;
+        return removed;
+    }
+
+    /**
+     * Removes the entities of a collection, keyed like added entities,
+     * with a single copy of the table
+     * @param entities
+     * @return number of entities removed
+     */
+    public int removeAll(Collection<? extends T> entities) {
+        int[] keys = new int[entities.size()];
+        int i = 0;
+        for (T entity : entities) {
+            keys[i++] = key.applyAsInt(entity);
+        }
+        return removeAll(keys);
+    }
+
+    /**
+     * Removes every entity
+     */
+    public synchronized void clear() {
+        table = new Table(8);
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Immutable once published
+     */
+    private static final class Table {
+
+        private final int[] keys;
+        private final Object[] values;
+        private int size;
+
+        private Table(int capacity) {
+            keys = new int[capacity];
+            values = new Object[capacity];
+        }
+
+        /**
+         * @return true if the table would be more than half full
+         */
+        private boolean needsResize(int entries) {
+            return entries * 2 > keys.length;
+        }
+
+        /**
+         * Copies the table, growing it to hold the given number of entries
+         */
+        private Table copy(int entries) {
+            int capacity = keys.length;
+            while (entries * 2 > capacity) {
+                capacity *= 2;
+            }
+            Table copy = new Table(capacity);
+            if (capacity == keys.length) {
+                System.arraycopy(keys, 0, copy.keys, 0, capacity);
+                System.arraycopy(values, 0, copy.values, 0, capacity);
+                copy.size = size;
+            } else {
+                for (int i = 0; i < keys.length; i++) {
+                    if (values[i] != null) {
+                        copy.insert(keys[i], values[i]);
+                    }
+                }
+            }
+            return copy;
+        }
+
+        private Object get(int key) {
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                Object value = values[i];
+                if (value == null) {
+                    return null;
+                }
+                if (keys[i] == key) {
+                    return value;
+                }
+            }
+        }
+
+        private void insert(int key, Object value) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (values[i] != null && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (values[i] == null) {
+                size++;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        /**
+         * Removes a key, shifting later entries of its probe run back
+         * @return false if the key was absent
+         */
+        private boolean delete(int key) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (keys[i] != key) {
+                if (values[i] == null) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            if (values[i] == null) {
+                return false;
+            }
+            values[i] = null;
+            size--;
+            for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+                int home = hash(keys[j]) & mask;
+                // move j into the gap at i unless its home lies in (i, j]
+                boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+                if (!stays) {
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    values[j] = null;
+                    i = j;
+                }
+            }
+            return true;
+        }
+    }
+}
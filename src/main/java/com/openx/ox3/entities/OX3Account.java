@@ -37,6 +37,10 @@ public class OX3Account
     private int deleted;
     private int market_active;
     private int market_currency_id;
+
+    static {
+        OX3AccountDecoder.register();
+    }
     
     OX3Account() {
         
@@ -121,4 +125,122 @@ public class OX3Account
     public int getTimezone_id() {
         return timezone_id;
     }
+
+    /**
+     * Fills accounts field by field for the decoders of this package,
+     * without reflection and without widening the fields
+     */
+    static final class Builder {
+
+        private OX3Account account = new OX3Account();
+
+        Builder id(int id) {
+            account.id = id;
+            return this;
+        }
+
+        Builder name(String name) {
+            account.name = name;
+            return this;
+        }
+
+        Builder status(String status) {
+            account.status = status;
+            return this;
+        }
+
+        Builder account_id(int account_id) {
+            account.account_id = account_id;
+            return this;
+        }
+
+        Builder account_type_id(int account_type_id) {
+            account.account_type_id = account_type_id;
+            return this;
+        }
+
+        Builder master(int master) {
+            account.master = master;
+            return this;
+        }
+
+        Builder currency_id(int currency_id) {
+            account.currency_id = currency_id;
+            return this;
+        }
+
+        Builder timezone_id(int timezone_id) {
+            account.timezone_id = timezone_id;
+            return this;
+        }
+
+        Builder country_of_business_id(String country_of_business_id) {
+            account.country_of_business_id = country_of_business_id;
+            return this;
+        }
+
+        Builder single_ad_limitation(int single_ad_limitation) {
+            account.single_ad_limitation = single_ad_limitation;
+            return this;
+        }
+
+        Builder primary_contact_id(int primary_contact_id) {
+            account.primary_contact_id = primary_contact_id;
+            return this;
+        }
+
+        Builder billing_contact_id(int billing_contact_id) {
+            account.billing_contact_id = billing_contact_id;
+            return this;
+        }
+
+        Builder external_id(String external_id) {
+            account.external_id = external_id;
+            return this;
+        }
+
+        Builder notes(String notes) {
+            account.notes = notes;
+            return this;
+        }
+
+        Builder instance_id(int instance_id) {
+            account.instance_id = instance_id;
+            return this;
+        }
+
+        Builder modified_date(String modified_date) {
+            account.modified_date = modified_date;
+            return this;
+        }
+
+        Builder created_date(String created_date) {
+            account.created_date = created_date;
+            return this;
+        }
+
+        Builder deleted(int deleted) {
+            account.deleted = deleted;
+            return this;
+        }
+
+        Builder market_active(int market_active) {
+            account.market_active = market_active;
+            return this;
+        }
+
+        Builder market_currency_id(int market_currency_id) {
+            account.market_currency_id = market_currency_id;
+            return this;
+        }
+
+        /**
+         * @return the account; the builder starts a new one
+         */
+        OX3Account build() {
+            OX3Account built = account;
+            account = new OX3Account();
+            return built;
+        }
+    }
 }
@@ -0,0 +1,179 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.ox3.entities;
+
+import java.io.IOException;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.openx.oauth.stream.DecoderRegistry;
+import com.openx.oauth.stream.ObjectDecoder;
+
+/**
+ * Decodes {@link OX3Account} objects field by field, without reflection.
+ * Unknown fields are skipped, nulls leave the field at its default and
+ * numbers sent as strings are accepted, as with Gson's binding.
+ *
+ * Stateless, so one instance is shared by all threads.
+ */
+public class OX3AccountDecoder implements ObjectDecoder<OX3Account> {
+
+    /**
+     * Shared instance
+     */
+    public static final OX3AccountDecoder INSTANCE = new OX3AccountDecoder();
+
+    /**
+     * Registers the decoder with {@link DecoderRegistry#DEFAULT}. Runs when
+     * OX3Account is initialized, so callers need not call it.
+     */
+    public static void register() {
+        register(DecoderRegistry.DEFAULT);
+    }
+
+    /**
+     * Registers the decoder with a registry
+     * @param registry
+     */
+    public static void register(DecoderRegistry registry) {
+        registry.register(OX3Account.class, INSTANCE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OX3Account decode(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        OX3Account.Builder account = new OX3Account.Builder();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "id":
+                    account.id(readInt(reader));
+                    break;
+                case "name":
+                    account.name(readString(reader));
+                    break;
+                case "status":
+                    account.status(readString(reader));
+                    break;
+                case "account_id":
+                    account.account_id(readInt(reader));
+                    break;
+                case "account_type_id":
+                    account.account_type_id(readInt(reader));
+                    break;
+                case "master":
+                    account.master(readInt(reader));
+                    break;
+                case "currency_id":
+                    account.currency_id(readInt(reader));
+                    break;
+                case "timezone_id":
+                    account.timezone_id(readInt(reader));
+                    break;
+                case "country_of_business_id":
+                    account.country_of_business_id(readString(reader));
+                    break;
+                case "single_ad_limitation":
+                    account.single_ad_limitation(readInt(reader));
+                    break;
+                case "primary_contact_id":
+                    account.primary_contact_id(readInt(reader));
+                    break;
+                case "billing_contact_id":
+                    account.billing_contact_id(readInt(reader));
+                    break;
+                case "external_id":
+                    account.external_id(readString(reader));
+                    break;
+                case "notes":
+                    account.notes(readString(reader));
+                    break;
+                case "instance_id":
+                    account.instance_id(readInt(reader));
+                    break;
+                case "modified_date":
+                    account.modified_date(readString(reader));
+                    break;
+                case "created_date":
+                    account.created_date(readString(reader));
+                    break;
+                case "deleted":
+                    account.deleted(readInt(reader));
+                    break;
+                case "market_active":
+                    account.market_active(readInt(reader));
+                    break;
+                case "market_currency_id":
+                    account.market_currency_id(readInt(reader));
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return account.build();
+    }
+
+    /**
+     * Reads an int given as number, numeric string, boolean or null
+     * @param reader
+     * @return the value, 0 for null or an empty string
+     * @throws IOException
+     */
+    static int readInt(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case NULL:
+                reader.nextNull();
+                return 0;
+            case BOOLEAN:
+                return reader.nextBoolean() ? 1 : 0;
+            case STRING:
+                String value = reader.nextString();
+                if (value.isEmpty()) {
+                    return 0;
+                }
+                try {
+                    return Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    throw new JsonSyntaxException("expected an int but was " + value);
+                }
+            default:
+                return reader.nextInt();
+        }
+    }
+
+    /**
+     * Reads a string given as string, number, boolean or null
+     * @param reader
+     * @return the value, null for null
+     * @throws IOException
+     */
+    static String readString(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case NULL:
+                reader.nextNull();
+                return null;
+            case BOOLEAN:
+                return String.valueOf(reader.nextBoolean());
+            default:
+                return reader.nextString();
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.ox3.entities;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary snapshot of a set of accounts and the sync watermark they are
+ * current to, so a service can start from local disk and only fetch the
+ * changes made since.
+ *
+ * Layout: magic "OX3S", format version, watermark, account count, a table
+ * of the distinct strings (lengths, then UTF-8 bytes), one block of 20 ints
+ * per account (string fields as table indexes, -1 for null) and a CRC32 of
+ * everything before it. Repeated values such as status or dates are stored
+ * once, and the fixed-width blocks are read in bulk from a memory-mapped
+ * channel. Snapshots are written to a temporary file and renamed into place.
+ * A single mapping is limited to 2 GB, and so is a snapshot; that holds
+ * about 25 million accounts.
+ */
+public class OX3AccountSnapshot {
+
+    private static final int MAGIC = 0x4f583353;
+    private static final int VERSION = 1;
+    private static final int FIELDS = 20;
+    private static final long MAX_LENGTH = Integer.MAX_VALUE;
+
+    private final String watermark;
+    private final List<OX3Account> accounts;
+
+    private OX3AccountSnapshot(String watermark, List<OX3Account> accounts) {
+        this.watermark = watermark;
+        this.accounts = accounts;
+    }
+
+    /**
+     * @return the watermark the accounts are current to, may be null
+     */
+    public String getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * @return the accounts, unmodifiable
+     */
+    public List<OX3Account> getAccounts() {
+        return accounts;
+    }
+
+    /**
+     * Writes a snapshot, replacing any previous one atomically
+     * @param file
+     * @param accounts
+     * @param watermark the watermark the accounts are current to, may be null
+     * @throws IOException
+     */
+    public static void write(File file, Iterable<? extends OX3Account> accounts,
+            String watermark) throws IOException {
+        Map<String, Integer> codes = new HashMap<String, Integer>();
+        List<String> strings = new ArrayList<String>();
+        int[] rows = new int[1024];
+        int count = 0;
+        for (OX3Account account : accounts) {
+            if ((long) (count + 1) * FIELDS * 4 > MAX_LENGTH) {
+                throw new IOException("too many accounts for one snapshot: " + file);
+            }
+            if ((count + 1) * FIELDS > rows.length) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+            }
+            encode(account, rows, count * FIELDS, codes, strings);
+            count++;
+        }
+        File dir = file.getAbsoluteFile().getParentFile();
+        File tmp = File.createTempFile("." + file.getName() + "-", ".tmp", dir);
+        try {
+            FileOutputStream fileOut = new FileOutputStream(tmp);
+            try {
+                CRC32 crc = new CRC32();
+                DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                        new BufferedOutputStream(fileOut, 65536), crc));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeString(out, watermark);
+                out.writeInt(count);
+                byte[][] bytes = new byte[strings.size()][];
+                out.writeInt(bytes.length);
+                int[] lengths = new int[bytes.length];
+                for (int i = 0; i < bytes.length; i++) {
+                    bytes[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+                    lengths[i] = bytes[i].length;
+                }
+                writeInts(out, lengths, lengths.length);
+                for (byte[] string : bytes) {
+                    out.write(string);
+                }
+                writeInts(out, rows, count * FIELDS);
+                out.flush();
+                // the checksum itself is not part of what it covers
+                new DataOutputStream(fileOut).writeInt((int) crc.getValue());
+                fileOut.getFD().sync();
+            } finally {
+                fileOut.close();
+            }
+            if (tmp.length() > MAX_LENGTH) {
+                // keep the previous snapshot, this one could not be read
+                throw new IOException("snapshot larger than 2 GB: " + file);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Reads a snapshot through a memory-mapped channel
+     * @param file
+     * @return the snapshot
+     * @throws IOException if the file is missing, truncated or corrupt
+     */
+    public static OX3AccountSnapshot read(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long length = channel.size();
+            if (length < 24) {
+                throw new IOException("snapshot truncated: " + file);
+            }
+            if (length > MAX_LENGTH) {
+                throw new IOException("snapshot larger than 2 GB: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            CRC32 crc = new CRC32();
+            ByteBuffer body = buffer.duplicate();
+            body.limit((int) length - 4);
+            crc.update(body);
+            if ((int) crc.getValue() != buffer.getInt((int) length - 4)) {
+                throw new IOException("snapshot checksum mismatch: " + file);
+            }
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("not an account snapshot: " + file);
+            }
+            String watermark = readString(buffer);
+            int count = buffer.getInt();
+            String[] strings = new String[buffer.getInt()];
+            int[] lengths = new int[strings.length];
+            buffer.asIntBuffer().get(lengths);
+            buffer.position(buffer.position() + lengths.length * 4);
+            byte[] bytes = new byte[64];
+            for (int i = 0; i < strings.length; i++) {
+                if (lengths[i] > bytes.length) {
+                    bytes = new byte[Math.max(lengths[i], bytes.length * 2)];
+                }
+                buffer.get(bytes, 0, lengths[i]);
+                strings[i] = new String(bytes, 0, lengths[i], StandardCharsets.UTF_8);
+            }
+            int[] rows = new int[count * FIELDS];
+            buffer.asIntBuffer().get(rows);
+            OX3Account[] accounts = new OX3Account[count];
+            OX3Account.Builder builder = new OX3Account.Builder();
+            for (int i = 0; i < count; i++) {
+                accounts[i] = decode(builder, rows, i * FIELDS, strings);
+            }
+            return new OX3AccountSnapshot(watermark,
+                    Collections.unmodifiableList(Arrays.asList(accounts)));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("snapshot corrupt: " + file, e);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static void encode(OX3Account account, int[] rows, int at,
+            Map<String, Integer> codes, List<String> strings) {
+        rows[at] = account.getId();
+        rows[at + 1] = account.getAccount_id();
+        rows[at + 2] = account.getAccount_type_id();
+        rows[at + 3] = account.getMaster();
+        rows[at + 4] = account.getCurrency_id();
+        rows[at + 5] = account.getTimezone_id();
+        rows[at + 6] = account.getSingle_ad_limitation();
+        rows[at + 7] = account.getPrimary_contact_id();
+        rows[at + 8] = account.getBilling_contact_id();
+        rows[at + 9] = account.getInstance_id();
+        rows[at + 10] = account.getDeleted();
+        rows[at + 11] = account.getMarket_active();
+        rows[at + 12] = account.getMarket_currency_id();
+        rows[at + 13] = code(account.getName(), codes, strings);
+        rows[at + 14] = code(account.getStatus(), codes, strings);
+        rows[at + 15] = code(account.getCountry_of_business_id(), codes, strings);
+        rows[at + 16] = code(account.getExternal_id(), codes, strings);
+        rows[at + 17] = code(account.getNotes(), codes, strings);
+        rows[at + 18] = code(account.getModified_date(), codes, strings);
+        rows[at + 19] = code(account.getCreated_date(), codes, strings);
+    }
+
+    private static OX3Account decode(OX3Account.Builder account, int[] rows, int at,
+            String[] strings) {
+        account.id(rows[at]);
+        account.account_id(rows[at + 1]);
+        account.account_type_id(rows[at + 2]);
+        account.master(rows[at + 3]);
+        account.currency_id(rows[at + 4]);
+        account.timezone_id(rows[at + 5]);
+        account.single_ad_limitation(rows[at + 6]);
+        account.primary_contact_id(rows[at + 7]);
+        account.billing_contact_id(rows[at + 8]);
+        account.instance_id(rows[at + 9]);
+        account.deleted(rows[at + 10]);
+        account.market_active(rows[at + 11]);
+        account.market_currency_id(rows[at + 12]);
+        account.name(string(rows[at + 13], strings));
+        account.status(string(rows[at + 14], strings));
+        account.country_of_business_id(string(rows[at + 15], strings));
+        account.external_id(string(rows[at + 16], strings));
+        account.notes(string(rows[at + 17], strings));
+        account.modified_date(string(rows[at + 18], strings));
+        account.created_date(string(rows[at + 19], strings));
+        return account.build();
+    }
+
+    private static int code(String value, Map<String, Integer> codes, List<String> strings) {
+        if (value == null) {
+            return -1;
+        }
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = strings.size();
+            codes.put(value, code);
+            strings.add(value);
+        }
+        return code;
+    }
+
+    private static String string(int code, String[] strings) {
+        return code < 0 ? null : strings[code];
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values, int count)
+            throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(65536);
+        for (int i = 0; i < count; ) {
+            int n = Math.min(count - i, chunk.capacity() / 4);
+            chunk.clear();
+            chunk.asIntBuffer().put(values, i, n);
+            out.write(chunk.array(), 0, n * 4);
+            i += n;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,330 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.ox3.entities;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Column store for large sets of {@link OX3Account}.
+ *
+ * Every field is kept in its own array: numbers in int columns,
+ * low-cardinality strings (status, country) as codes into a dictionary,
+ * dates as epoch milliseconds, and free text (names, external ids, notes)
+ * packed into one char array per column. Scans over a column touch one
+ * primitive array instead of one object per account.
+ *
+ * {@link #get(int)} and {@link #iterator()} build a new OX3Account from
+ * the columns for every row; use the column accessors for scans.
+ *
+ * Appending is not thread-safe. Once filled the store may be read by any
+ * number of threads.
+ */
+public class OX3AccountStore implements Iterable<OX3Account> {
+
+    /**
+     * Returned by the date columns for a missing date
+     */
+    public static final long NO_DATE = Long.MIN_VALUE;
+
+    private static final int ID = 0;
+    private static final int ACCOUNT_ID = 1;
+    private static final int ACCOUNT_TYPE_ID = 2;
+    private static final int MASTER = 3;
+    private static final int CURRENCY_ID = 4;
+    private static final int TIMEZONE_ID = 5;
+    private static final int SINGLE_AD_LIMITATION = 6;
+    private static final int PRIMARY_CONTACT_ID = 7;
+    private static final int BILLING_CONTACT_ID = 8;
+    private static final int INSTANCE_ID = 9;
+    private static final int DELETED = 10;
+    private static final int MARKET_ACTIVE = 11;
+    private static final int MARKET_CURRENCY_ID = 12;
+    private static final int STATUS = 13;
+    private static final int COUNTRY = 14;
+    private static final int INT_COLUMNS = 15;
+
+    private static final int CREATED = 0;
+    private static final int MODIFIED = 1;
+    private static final int DATE_COLUMNS = 2;
+
+    // a date that does not follow the OX3 format keeps its original text
+    private static final long UNPARSED_DATE = Long.MIN_VALUE + 1;
+
+    private final int[][] ints = new int[INT_COLUMNS][];
+    private final long[][] dates = new long[DATE_COLUMNS][];
+    private final StringColumn names;
+    private final StringColumn externalIds;
+    private final StringColumn notes;
+    private final StringDictionary statusDictionary = new StringDictionary();
+    private final StringDictionary countryDictionary = new StringDictionary();
+    private final Map<Long, String> unparsedDates = new HashMap<Long, String>();
+    private int size;
+
+    /**
+     * Object Constructor
+     * @param initialCapacity rows allocated up front
+     */
+    public OX3AccountStore(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        for (int c = 0; c < INT_COLUMNS; c++) {
+            ints[c] = new int[capacity];
+        }
+        for (int c = 0; c < DATE_COLUMNS; c++) {
+            dates[c] = new long[capacity];
+        }
+        names = new StringColumn(capacity);
+        externalIds = new StringColumn(capacity);
+        notes = new StringColumn(capacity);
+    }
+
+    /**
+     * Appends an account
+     * @param account
+     * @return the row of the account
+     */
+    public int add(OX3Account account) {
+        if (size == ints[ID].length) {
+            grow();
+        }
+        int row = size++;
+        ints[ID][row] = account.getId();
+        ints[ACCOUNT_ID][row] = account.getAccount_id();
+        ints[ACCOUNT_TYPE_ID][row] = account.getAccount_type_id();
+        ints[MASTER][row] = account.getMaster();
+        ints[CURRENCY_ID][row] = account.getCurrency_id();
+        ints[TIMEZONE_ID][row] = account.getTimezone_id();
+        ints[SINGLE_AD_LIMITATION][row] = account.getSingle_ad_limitation();
+        ints[PRIMARY_CONTACT_ID][row] = account.getPrimary_contact_id();
+        ints[BILLING_CONTACT_ID][row] = account.getBilling_contact_id();
+        ints[INSTANCE_ID][row] = account.getInstance_id();
+        ints[DELETED][row] = account.getDeleted();
+        ints[MARKET_ACTIVE][row] = account.getMarket_active();
+        ints[MARKET_CURRENCY_ID][row] = account.getMarket_currency_id();
+        ints[STATUS][row] = statusDictionary.encode(account.getStatus());
+        ints[COUNTRY][row] = countryDictionary.encode(account.getCountry_of_business_id());
+        names.set(row, account.getName());
+        externalIds.set(row, account.getExternal_id());
+        notes.set(row, account.getNotes());
+        setDate(CREATED, row, account.getCreated_date());
+        setDate(MODIFIED, row, account.getModified_date());
+        return row;
+    }
+
+    /**
+     * Appends every account of an iterator, e.g. one from streamOX3Api
+     * @param accounts
+     */
+    public void addAll(Iterator<? extends OX3Account> accounts) {
+        while (accounts.hasNext()) {
+            add(accounts.next());
+        }
+    }
+
+    /**
+     * @return number of accounts
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Builds the account of one row
+     * @param row
+     * @return a new OX3Account holding the row's fields
+     */
+    public OX3Account get(int row) {
+        return account(new OX3Account.Builder(), checkRow(row));
+    }
+
+    /**
+     * Iterates over all rows, building a new OX3Account for each
+     * @return iterator
+     */
+    @Override
+    public Iterator<OX3Account> iterator() {
+        return new Iterator<OX3Account>() {
+
+            private final OX3Account.Builder builder = new OX3Account.Builder();
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public OX3Account next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return account(builder, next++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * @param row
+     * @return id column value
+     */
+    public int id(int row) {
+        return ints[ID][checkRow(row)];
+    }
+
+    /**
+     * @param row
+     * @return account_id column value
+     */
+    public int accountId(int row) {
+        return ints[ACCOUNT_ID][checkRow(row)];
+    }
+
+    /**
+     * @param row
+     * @return currency_id column value
+     */
+    public int currencyId(int row) {
+        return ints[CURRENCY_ID][checkRow(row)];
+    }
+
+    /**
+     * @param row
+     * @return timezone_id column value
+     */
+    public int timezoneId(int row) {
+        return ints[TIMEZONE_ID][checkRow(row)];
+    }
+
+    /**
+     * @param row
+     * @return deleted column value
+     */
+    public int deleted(int row) {
+        return ints[DELETED][checkRow(row)];
+    }
+
+    /**
+     * @param row
+     * @return dictionary code of the status, compare it with
+     * {@link #statusCode(String)}
+     */
+    public int statusCodeAt(int row) {
+        return ints[STATUS][checkRow(row)];
+    }
+
+    /**
+     * Looks up the code of a status for scans with {@link #statusCodeAt(int)}
+     * @param status
+     * @return the code, or -1 if no account has this status
+     */
+    public int statusCode(String status) {
+        return statusDictionary.find(status);
+    }
+
+    /**
+     * @param row
+     * @return created_date in epoch milliseconds (UTC), or {@link #NO_DATE}
+     */
+    public long createdMillis(int row) {
+        return dateMillis(CREATED, checkRow(row));
+    }
+
+    /**
+     * @param row
+     * @return modified_date in epoch milliseconds (UTC), or {@link #NO_DATE}
+     */
+    public long modifiedMillis(int row) {
+        return dateMillis(MODIFIED, checkRow(row));
+    }
+
+    private long dateMillis(int column, int row) {
+        long value = dates[column][row];
+        return value == UNPARSED_DATE ? NO_DATE : value;
+    }
+
+    private String dateString(int column, int row) {
+        long value = dates[column][row];
+        if (value == NO_DATE) {
+            return null;
+        }
+        if (value == UNPARSED_DATE) {
+            return unparsedDates.get(((long) row << 1) | column);
+        }
+        return OX3Dates.format(value);
+    }
+
+    private void setDate(int column, int row, String date) {
+        if (date == null) {
+            dates[column][row] = NO_DATE;
+            return;
+        }
+        long millis = OX3Dates.parse(date);
+        if (millis == NO_DATE || !date.equals(OX3Dates.format(millis))) {
+            dates[column][row] = UNPARSED_DATE;
+            unparsedDates.put(((long) row << 1) | column, date);
+        } else {
+            dates[column][row] = millis;
+        }
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row " + row + " of " + size);
+        }
+        return row;
+    }
+
+    private void grow() {
+        int capacity = ints[ID].length * 2;
+        for (int c = 0; c < INT_COLUMNS; c++) {
+            ints[c] = Arrays.copyOf(ints[c], capacity);
+        }
+        for (int c = 0; c < DATE_COLUMNS; c++) {
+            dates[c] = Arrays.copyOf(dates[c], capacity);
+        }
+        names.grow(capacity);
+        externalIds.grow(capacity);
+        notes.grow(capacity);
+    }
+
+    private OX3Account account(OX3Account.Builder builder, int row) {
+        return builder.id(ints[ID][row])
+                .name(names.get(row))
+                .status(statusDictionary.decode(ints[STATUS][row]))
+                .account_id(ints[ACCOUNT_ID][row])
+                .account_type_id(ints[ACCOUNT_TYPE_ID][row])
+                .master(ints[MASTER][row])
+                .currency_id(ints[CURRENCY_ID][row])
+                .timezone_id(ints[TIMEZONE_ID][row])
+                .country_of_business_id(countryDictionary.decode(ints[COUNTRY][row]))
+                .single_ad_limitation(ints[SINGLE_AD_LIMITATION][row])
+                .primary_contact_id(ints[PRIMARY_CONTACT_ID][row])
+                .billing_contact_id(ints[BILLING_CONTACT_ID][row])
+                .external_id(externalIds.get(row))
+                .notes(notes.get(row))
+                .instance_id(ints[INSTANCE_ID][row])
+                .modified_date(dateString(MODIFIED, row))
+                .created_date(dateString(CREATED, row))
+                .deleted(ints[DELETED][row])
+                .market_active(ints[MARKET_ACTIVE][row])
+                .market_currency_id(ints[MARKET_CURRENCY_ID][row])
+                .build();
+    }
+}
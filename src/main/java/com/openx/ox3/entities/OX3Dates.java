@@ -0,0 +1,111 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.ox3.entities;
+
+/**
+ * Converts OX3 date strings ("yyyy-MM-dd HH:mm:ss", read as UTC) to and
+ * from epoch milliseconds without going through a date formatter.
+ */
+final class OX3Dates {
+
+    private static final long MILLIS_PER_DAY = 86400000L;
+
+    private OX3Dates() {
+    }
+
+    /**
+     * @param date
+     * @return epoch milliseconds, or {@link OX3AccountStore#NO_DATE} if the
+     * string does not have the OX3 format
+     */
+    static long parse(String date) {
+        if (date.length() != 19 || date.charAt(4) != '-' || date.charAt(7) != '-'
+                || date.charAt(10) != ' ' || date.charAt(13) != ':'
+                || date.charAt(16) != ':') {
+            return OX3AccountStore.NO_DATE;
+        }
+        int year = digits(date, 0, 4);
+        int month = digits(date, 5, 2);
+        int day = digits(date, 8, 2);
+        int hour = digits(date, 11, 2);
+        int minute = digits(date, 14, 2);
+        int second = digits(date, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || second < 0 || second > 59) {
+            return OX3AccountStore.NO_DATE;
+        }
+        return daysFromCivil(year, month, day) * MILLIS_PER_DAY
+                + ((hour * 60L + minute) * 60L + second) * 1000L;
+    }
+
+    /**
+     * @param millis epoch milliseconds
+     * @return the date in OX3 format
+     */
+    static String format(long millis) {
+        long days = Math.floorDiv(millis, MILLIS_PER_DAY);
+        int secondOfDay = (int) (Math.floorMod(millis, MILLIS_PER_DAY) / 1000);
+        // civil from days, see http://howardhinnant.github.io/date_algorithms.html
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yoe + era * 400 + (month <= 2 ? 1 : 0));
+
+        char[] out = new char[19];
+        put(out, 0, year, 4);
+        out[4] = '-';
+        put(out, 5, month, 2);
+        out[7] = '-';
+        put(out, 8, day, 2);
+        out[10] = ' ';
+        put(out, 11, secondOfDay / 3600, 2);
+        out[13] = ':';
+        put(out, 14, secondOfDay / 60 % 60, 2);
+        out[16] = ':';
+        put(out, 17, secondOfDay % 60, 2);
+        return new String(out);
+    }
+
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    private static int digits(String s, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static void put(char[] out, int start, int value, int count) {
+        for (int i = start + count - 1; i >= start; i--) {
+            out[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.ox3.entities;
+
+import java.util.Arrays;
+
+/**
+ * Column of mostly distinct strings packed into one char array, so a row
+ * costs its characters plus two ints instead of a String object.
+ */
+class StringColumn {
+
+    private char[] chars = new char[1024];
+    private int[] starts;
+    private int[] lengths;
+    private int used;
+
+    /**
+     * Object Constructor
+     * @param capacity
+     */
+    StringColumn(int capacity) {
+        starts = new int[capacity];
+        lengths = new int[capacity];
+    }
+
+    /**
+     * @param row
+     * @param value stored as null if null
+     */
+    void set(int row, String value) {
+        if (value == null) {
+            lengths[row] = -1;
+            return;
+        }
+        int length = value.length();
+        if (used + length > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, used + length));
+        }
+        value.getChars(0, length, chars, used);
+        starts[row] = used;
+        lengths[row] = length;
+        used += length;
+    }
+
+    /**
+     * @param row
+     * @return the value
+     */
+    String get(int row) {
+        int length = lengths[row];
+        return length < 0 ? null : new String(chars, starts[row], length);
+    }
+
+    /**
+     * @param capacity rows to make room for
+     */
+    void grow(int capacity) {
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+    }
+}
@@ -0,0 +1,74 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.ox3.entities;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps repeated strings to small int codes so each distinct value is
+ * stored once. Code 0 stands for null.
+ */
+class StringDictionary {
+
+    private final Map<String, Integer> codes = new HashMap<String, Integer>();
+    private String[] values = new String[16];
+    private int size = 1;
+
+    /**
+     * @param value
+     * @return the code of the value, added if new
+     */
+    int encode(String value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer code = codes.get(value);
+        if (code == null) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            code = size;
+            values[size++] = value;
+            codes.put(value, code);
+        }
+        return code;
+    }
+
+    /**
+     * @param value
+     * @return the code of the value, or -1 if it never was encoded
+     */
+    int find(String value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : -1;
+    }
+
+    /**
+     * @param code
+     * @return the value, null for code 0
+     */
+    String decode(int code) {
+        return values[code];
+    }
+
+    /**
+     * @return distinct values, not counting null
+     */
+    int size() {
+        return size - 1;
+    }
+}
@@ -0,0 +1,149 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.client;
+
+import java.io.InterruptedIOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.apache.http.client.methods.HttpGet;
+
+import com.openx.oauth.retry.CircuitBreaker;
+import com.openx.oauth.retry.RetryPolicy;
+import com.openx.oauth.throttle.Throttle;
+import com.openx.oauth.transport.BufferedResponse;
+
+/**
+ * Circuit breaker handling of the Helper's retrying calls
+ */
+public class HelperRetryTest extends TestCase {
+
+    private ServerSocket silentServer;
+    private Helper helper;
+    private String domain;
+
+    @Override
+    protected void setUp() throws Exception {
+        // accepts connections through its backlog but never answers
+        silentServer = new ServerSocket(0);
+        domain = "http://localhost:" + silentServer.getLocalPort();
+        helper = new Helper(domain + "/login", "user", "password", "token");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        silentServer.close();
+    }
+
+    /**
+     * A cancelled half-open probe must not keep the circuit closed to
+     * every later call
+     */
+    public void testCancelledProbeAdmitsNextCall() throws Exception {
+        RetryPolicy policy = new RetryPolicy(3, 10, 10, 10, TimeUnit.SECONDS)
+                .circuitBreaker(1, 1, TimeUnit.MILLISECONDS);
+        helper.setRetryPolicy(policy);
+        URI uri = URI.create(domain + "/ox/4.0/account");
+        CircuitBreaker breaker = policy.circuitBreaker(uri);
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Thread.sleep(10);
+
+        CompletableFuture<BufferedResponse> probe = helper.exchangeAsync(domain, new HttpGet(uri));
+        assertFalse(probe.isDone());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        probe.cancel(false);
+
+        CompletableFuture<BufferedResponse> next = helper.exchangeAsync(domain, new HttpGet(uri));
+        try {
+            assertFalse("next call was refused", next.isCompletedExceptionally());
+            assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        } finally {
+            next.cancel(false);
+        }
+    }
+
+    /**
+     * A probe abandoned without an outcome lets the next request probe
+     */
+    public void testReleaseKeepsStateAndAdmitsProbe() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("localhost", 1, 0);
+        assertFalse(breaker.check());
+        breaker.onFailure();
+        assertTrue(breaker.check());
+        breaker.release();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.check());
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    /**
+     * Sends a GET on another thread, interrupts it while it waits for a
+     * throttle whose only permit is taken and returns what it threw
+     */
+    private Throwable interruptedCall(URI uri) throws Exception {
+        Throttle throttle = new Throttle(1000, 10, 1, 1);
+        throttle.acquire();
+        helper.setThrottle(throttle);
+        final Throwable[] thrown = new Throwable[1];
+        Thread caller = new Thread(() -> {
+            try {
+                helper.exchange(domain, new HttpGet(uri), new AtomicInteger());
+            } catch (Throwable e) {
+                thrown[0] = e;
+            }
+        });
+        caller.start();
+        Thread.sleep(200);
+        caller.interrupt();
+        caller.join(10000);
+        assertFalse("call was not interrupted", caller.isAlive());
+        throttle.abandon();
+        return thrown[0];
+    }
+
+    /**
+     * Interrupting a caller says nothing about the host
+     */
+    public void testInterruptedCallDoesNotOpenCircuit() throws Exception {
+        RetryPolicy policy = new RetryPolicy(3, 10, 10, 10, TimeUnit.SECONDS)
+                .circuitBreaker(1, 1, TimeUnit.MINUTES);
+        helper.setRetryPolicy(policy);
+        URI uri = URI.create(domain + "/ox/4.0/account");
+
+        assertTrue(interruptedCall(uri) instanceof InterruptedIOException);
+        assertEquals(CircuitBreaker.State.CLOSED, policy.circuitBreaker(uri).getState());
+    }
+
+    /**
+     * An interrupted half-open probe lets the next call probe
+     */
+    public void testInterruptedProbeAdmitsNextCall() throws Exception {
+        RetryPolicy policy = new RetryPolicy(3, 10, 10, 10, TimeUnit.SECONDS)
+                .circuitBreaker(1, 1, TimeUnit.MILLISECONDS);
+        helper.setRetryPolicy(policy);
+        URI uri = URI.create(domain + "/ox/4.0/account");
+        CircuitBreaker breaker = policy.circuitBreaker(uri);
+        breaker.onFailure();
+        Thread.sleep(10);
+
+        assertTrue(interruptedCall(uri) instanceof InterruptedIOException);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue("next call was refused", breaker.check());
+    }
+}
@@ -0,0 +1,103 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.openx.oauth.session.SessionGuard;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Session renewal of the Helper against an API that rejects every call
+ */
+public class HelperSessionTest extends TestCase {
+
+    private static final String PATH = "/ox/4.0/";
+
+    private HttpServer server;
+    private String domain;
+    private Helper helper;
+    private AtomicInteger renewals;
+    private AtomicInteger requests;
+
+    @Override
+    protected void setUp() throws Exception {
+        requests = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            exchange.getRequestBody().close();
+            // a body keeps the JDK server from resetting the connection
+            exchange.sendResponseHeaders(401, 1);
+            OutputStream body = exchange.getResponseBody();
+            body.write('x');
+            body.close();
+        });
+        server.start();
+        domain = "http://localhost:" + server.getAddress().getPort();
+        helper = new Helper(domain + "/login", "user", "password", "token");
+        renewals = new AtomicInteger();
+        helper.setSessionGuard(new SessionGuard(() -> renewals.incrementAndGet()));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.stop(0);
+    }
+
+    /**
+     * callOX3Api answers a rejected call with an empty body
+     */
+    private void assertRejected(int calls) throws IOException {
+        for (int i = 0; i < calls; i++) {
+            assertEquals("", helper.callOX3Api(domain, PATH, "account"));
+        }
+    }
+
+    /**
+     * A 401 that outlives a renewal must not log in on every call
+     */
+    public void testPersistent401RenewsOnce() throws Exception {
+        assertRejected(20);
+        assertEquals(1, renewals.get());
+        // each call is sent once, the first one again after the renewal
+        assertEquals(21, requests.get());
+    }
+
+    public void testPersistent401RenewsOnceAsync() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            assertEquals("", helper.callOX3ApiAsync(domain, PATH, "account").join());
+        }
+        assertEquals(1, renewals.get());
+    }
+
+    public void testRenewsAgainAfterInterval() throws Exception {
+        helper.getSessionGuard().minRenewalInterval(1, TimeUnit.SECONDS);
+        assertRejected(3);
+        assertEquals(1, renewals.get());
+        Thread.sleep(1100);
+        assertRejected(3);
+        assertEquals(2, renewals.get());
+    }
+
+    public void testZeroIntervalRenewsOnEveryRejection() throws Exception {
+        helper.getSessionGuard().minRenewalInterval(0, TimeUnit.SECONDS);
+        assertRejected(5);
+        assertEquals(5, renewals.get());
+    }
+}
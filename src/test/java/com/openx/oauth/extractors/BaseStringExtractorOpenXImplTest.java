@@ -0,0 +1,199 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.extractors;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.scribe.exceptions.OAuthParametersMissingException;
+import org.scribe.extractors.BaseStringExtractor;
+import org.scribe.extractors.BaseStringExtractorImpl;
+import org.scribe.model.OAuthRequest;
+import org.scribe.model.Verb;
+import org.scribe.utils.URLUtils;
+
+import com.openx.oauth.request.OpenXRequest;
+
+/**
+ * Base strings and percent-encoding must equal scribe's byte for byte
+ */
+public class BaseStringExtractorOpenXImplTest extends TestCase {
+
+    private static final String[] AWKWARD = {
+        "", "a b", "a+b", "a=b", "a&b", "%", "%41", "~", "*", "-._", "!'()",
+        ":/?#[]@", "$,;", "ä", "München", "日本", "😀", "x😀y",
+        "\ud800", "\udc00", "a\ud800b", "\udc00\ud800", "\ud83d", "?",
+        "\u007f", "\u0080", "߿", "ࠀ", "￿",
+    };
+
+    private final BaseStringExtractor scribe = new BaseStringExtractorImpl();
+    private final BaseStringExtractor extractor = new BaseStringExtractorOpenXImpl();
+    private final Random random = new Random(11);
+
+    private static String encode(String value) {
+        StringBuilder out = new StringBuilder();
+        PercentEncoding.append(out, value);
+        return out.toString();
+    }
+
+    private void assertSameBaseString(OAuthRequest request) {
+        assertEquals(scribe.extract(request), extractor.extract(request));
+    }
+
+    private String randomString() {
+        StringBuilder s = new StringBuilder();
+        int length = random.nextInt(12);
+        for (int i = 0; i < length; i++) {
+            switch (random.nextInt(5)) {
+            case 0:
+                s.append(AWKWARD[random.nextInt(AWKWARD.length)]);
+                break;
+            case 1:
+                s.append((char) random.nextInt(0x10000));
+                break;
+            case 2:
+                s.appendCodePoint(0x10000 + random.nextInt(0x100000));
+                break;
+            default:
+                s.append((char) (0x20 + random.nextInt(0x5f)));
+            }
+        }
+        return s.toString();
+    }
+
+    public void testPercentEncodingOfAwkwardStrings() {
+        for (String value : AWKWARD) {
+            assertEquals(value, URLUtils.percentEncode(value), encode(value));
+        }
+    }
+
+    public void testPercentEncodingOfEveryChar() {
+        for (int c = 0; c < 0x10000; c++) {
+            String value = "a" + (char) c + "b";
+            assertEquals(Integer.toHexString(c), URLUtils.percentEncode(value), encode(value));
+        }
+    }
+
+    public void testPercentEncodingOfRandomStrings() {
+        for (int i = 0; i < 20000; i++) {
+            String value = randomString();
+            assertEquals(URLUtils.percentEncode(value), encode(value));
+        }
+    }
+
+    public void testPercentEncodingOfRange() {
+        StringBuilder out = new StringBuilder("x");
+        PercentEncoding.append(out, "a b😀c", 1, 5);
+        assertEquals("x%20b%F0%9F%98%80", out.toString());
+    }
+
+    public void testSimpleRequest() {
+        OpenXRequest request = new OpenXRequest(Verb.GET,
+                "http://example.com/ox/4.0/account?limit=10&offset=0");
+        request.addOAuthParameter("oauth_consumer_key", "key");
+        request.addOAuthParameter("oauth_nonce", "12345");
+        request.addOAuthParameter("oauth_timestamp", "1300000000");
+        assertSameBaseString(request);
+    }
+
+    /**
+     * Equal names in the query, body and OAuth parameters: the later source
+     * wins, as in scribe's map
+     */
+    public void testDuplicateNamesAcrossSources() {
+        OpenXRequest request = new OpenXRequest(Verb.POST,
+                "http://example.com/ox/4.0/account?oauth_token=query&a=query&b=1");
+        request.addQuerystringParameter("c", "query");
+        request.addBodyParameter("a", "body");
+        request.addBodyParameter("c", "body");
+        request.addBodyParameter("oauth_token", "body");
+        request.addOAuthParameter("oauth_token", "oauth");
+        request.addOAuthParameter("oauth_nonce", "n");
+        assertSameBaseString(request);
+        assertTrue(extractor.extract(request).contains("oauth_token%3Doauth"));
+        assertFalse(extractor.extract(request).contains("oauth_token%3Dbody"));
+    }
+
+    public void testReservedCharactersInNames() {
+        OpenXRequest request = new OpenXRequest(Verb.POST, "http://example.com/path");
+        for (String name : AWKWARD) {
+            if (!name.isEmpty()) {
+                request.addBodyParameter(name, "v" + name);
+                request.addQuerystringParameter(name + "q", name);
+            }
+        }
+        request.addOAuthParameter("oauth_a b", "x y");
+        request.addOAuthParameter("oauth_ä", "\ud800");
+        request.addOAuthParameter("oauth_~", "*");
+        assertSameBaseString(request);
+    }
+
+    /**
+     * An unpaired surrogate and '?' encode to the same name, so one
+     * replaces the other
+     */
+    public void testNamesEncodingAlike() {
+        OpenXRequest request = new OpenXRequest(Verb.POST, "http://example.com/path");
+        request.addQuerystringParameter("?", "query");
+        request.addBodyParameter("\ud800", "body");
+        request.addOAuthParameter("oauth_\ud800", "1");
+        request.addOAuthParameter("oauth_?", "2");
+        assertSameBaseString(request);
+    }
+
+    public void testRandomRequests() {
+        for (int i = 0; i < 2000; i++) {
+            OpenXRequest request = new OpenXRequest(i % 2 == 0 ? Verb.GET : Verb.POST,
+                    "https://example.com:8443/ox/4.0/" + i);
+            int params = random.nextInt(8);
+            for (int p = 0; p < params; p++) {
+                request.addQuerystringParameter(randomString(), randomString());
+                request.addBodyParameter(randomString(), randomString());
+                request.addOAuthParameter("oauth_" + randomString(), randomString());
+            }
+            request.addOAuthParameter("oauth_nonce", randomString());
+            assertSameBaseString(request);
+        }
+    }
+
+    /**
+     * Plain scribe requests keep their OAuth parameters in a HashMap
+     */
+    public void testScribeRequest() {
+        OAuthRequest request = new OAuthRequest(Verb.PUT, "http://example.com/x?z=1&y=2");
+        request.addOAuthParameter("oauth_nonce", "n o");
+        request.addOAuthParameter("oauth_consumer_key", "kéy");
+        request.addBodyParameter("b", "😀");
+        assertSameBaseString(request);
+    }
+
+    public void testLongRequestsReleaseBuffers() {
+        OpenXRequest request = new OpenXRequest(Verb.POST, "http://example.com/big");
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            big.append("ä ");
+        }
+        request.addBodyParameter("big", big.toString());
+        request.addOAuthParameter("oauth_nonce", "n");
+        assertSameBaseString(request);
+        testSimpleRequest();
+    }
+
+    public void testMissingOAuthParameters() {
+        try {
+            extractor.extract(new OpenXRequest(Verb.GET, "http://example.com/"));
+            fail("extracted a base string without OAuth parameters");
+        } catch (OAuthParametersMissingException expected) {
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.request;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+/**
+ * Ordering and Map behaviour of OAuthParameters
+ */
+public class OAuthParametersTest extends TestCase {
+
+    private OAuthParameters parameters;
+
+    @Override
+    protected void setUp() {
+        parameters = new OAuthParameters();
+    }
+
+    private List<String> keys() {
+        List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < parameters.size(); i++) {
+            keys.add(parameters.keyAt(i));
+        }
+        return keys;
+    }
+
+    public void testKeptSortedByName() {
+        parameters.put("oauth_version", "1.0");
+        parameters.put("oauth_consumer_key", "key");
+        parameters.put("oauth_timestamp", "1");
+        parameters.put("oauth_nonce", "n");
+        parameters.put("oauth_a", "a");
+        assertEquals("[oauth_a, oauth_consumer_key, oauth_nonce, oauth_timestamp, oauth_version]",
+                keys().toString());
+        assertEquals("n", parameters.valueAt(2));
+        assertEquals(new ArrayList<String>(parameters.keySet()), keys());
+    }
+
+    public void testReplaceKeepsPosition() {
+        parameters.put("b", "1");
+        parameters.put("a", "1");
+        assertEquals("1", parameters.put("b", "2"));
+        assertEquals(2, parameters.size());
+        assertEquals("b", parameters.keyAt(1));
+        assertEquals("2", parameters.valueAt(1));
+        assertEquals("2", parameters.get("b"));
+    }
+
+    public void testRemove() {
+        parameters.put("a", "1");
+        parameters.put("b", "2");
+        parameters.put("c", "3");
+        assertEquals("2", parameters.remove("b"));
+        assertNull(parameters.remove("b"));
+        assertNull(parameters.remove(Integer.valueOf(1)));
+        assertEquals("[a, c]", keys().toString());
+        assertFalse(parameters.containsKey("b"));
+        assertNull(parameters.get("b"));
+    }
+
+    public void testIteratorRemove() {
+        for (String key : new String[] {"d", "a", "c", "b", "e"}) {
+            parameters.put(key, key.toUpperCase());
+        }
+        Iterator<Map.Entry<String, String>> it = parameters.entrySet().iterator();
+        List<String> seen = new ArrayList<String>();
+        while (it.hasNext()) {
+            Map.Entry<String, String> entry = it.next();
+            seen.add(entry.getKey() + "=" + entry.getValue());
+            if (!entry.getKey().equals("c")) {
+                it.remove();
+            }
+        }
+        assertEquals("[a=A, b=B, c=C, d=D, e=E]", seen.toString());
+        assertEquals(1, parameters.size());
+        assertEquals("c", parameters.keyAt(0));
+        assertEquals("C", parameters.get("c"));
+    }
+
+    public void testIteratorRemoveTwiceFails() {
+        parameters.put("a", "1");
+        Iterator<Map.Entry<String, String>> it = parameters.entrySet().iterator();
+        try {
+            it.remove();
+            fail("removed before next");
+        } catch (IllegalStateException expected) {
+        }
+        it.next();
+        it.remove();
+        try {
+            it.remove();
+            fail("removed twice");
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            it.next();
+            fail("next past the end");
+        } catch (NoSuchElementException expected) {
+        }
+        assertTrue(parameters.isEmpty());
+    }
+
+    public void testIndexOutOfRange() {
+        parameters.put("a", "1");
+        try {
+            parameters.keyAt(1);
+            fail("read past the end");
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        try {
+            parameters.valueAt(-1);
+            fail("read before the start");
+        } catch (IndexOutOfBoundsException expected) {
+        }
+    }
+
+    public void testNullKeyRejected() {
+        try {
+            parameters.put(null, "1");
+            fail("put a null key");
+        } catch (NullPointerException expected) {
+        }
+    }
+
+    public void testMatchesTreeMap() {
+        Random random = new Random(3);
+        TreeMap<String, String> expected = new TreeMap<String, String>();
+        for (int step = 0; step < 5000; step++) {
+            String key = "oauth_" + random.nextInt(40);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), parameters.remove(key));
+            } else {
+                String value = Integer.toString(step);
+                assertEquals(expected.put(key, value), parameters.put(key, value));
+            }
+            if (step % 1000 == 999) {
+                parameters.clear();
+                expected.clear();
+            }
+        }
+        assertEquals(expected, parameters);
+        assertEquals(new ArrayList<String>(expected.keySet()), keys());
+    }
+}
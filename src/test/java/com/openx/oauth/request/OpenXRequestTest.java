@@ -0,0 +1,83 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.request;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import junit.framework.TestCase;
+
+import org.scribe.model.Verb;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Body encoding of OpenXRequest.execute
+ */
+public class OpenXRequestTest extends TestCase {
+
+    private HttpServer server;
+    private String url;
+    private volatile byte[] received;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            InputStream in = exchange.getRequestBody();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            for (int n; (n = in.read(chunk)) > 0; ) {
+                body.write(chunk, 0, n);
+            }
+            received = body.toByteArray();
+            exchange.sendResponseHeaders(200, 2);
+            OutputStream out = exchange.getResponseBody();
+            out.write("ok".getBytes(StandardCharsets.US_ASCII));
+            out.close();
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/token";
+    }
+
+    @Override
+    protected void tearDown() {
+        server.stop(0);
+    }
+
+    public void testPayloadIsSentAsUtf8() {
+        OpenXRequest request = new OpenXRequest(Verb.POST, url);
+        request.addPayload("name=München");
+        assertEquals(200, request.execute().getCode());
+        assertEquals("name=München", new String(received, StandardCharsets.UTF_8));
+    }
+
+    public void testPayloadUsesDeclaredCharset() {
+        OpenXRequest request = new OpenXRequest(Verb.POST, url);
+        request.addHeader("Content-Type", "text/plain; charset=ISO-8859-1");
+        request.addPayload("München");
+        request.execute();
+        assertEquals("München", new String(received, StandardCharsets.ISO_8859_1));
+        assertEquals(7, received.length);
+    }
+
+    public void testFormBody() {
+        OpenXRequest request = new OpenXRequest(Verb.POST, url);
+        request.addHeader("content-type", "application/x-www-form-urlencoded");
+        request.addBodyParameter("name", "München");
+        request.execute();
+        assertEquals("name=M%C3%BCnchen", new String(received, StandardCharsets.US_ASCII));
+    }
+}
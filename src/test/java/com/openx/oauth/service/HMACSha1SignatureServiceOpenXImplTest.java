@@ -0,0 +1,144 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.service;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.scribe.exceptions.OAuthSignatureException;
+import org.scribe.services.HMACSha1SignatureService;
+import org.scribe.services.SignatureService;
+
+/**
+ * Signatures of HMACSha1SignatureServiceOpenXImpl must equal scribe's
+ */
+public class HMACSha1SignatureServiceOpenXImplTest extends TestCase {
+
+    private static final String BASE_CHARS =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-._~%&=+";
+
+    private final SignatureService scribe = new HMACSha1SignatureService();
+    private final SignatureService service = new HMACSha1SignatureServiceOpenXImpl();
+    private final Random random = new Random(7);
+
+    private String randomString(String chars, int maxLength) {
+        StringBuilder s = new StringBuilder();
+        int length = 1 + random.nextInt(maxLength);
+        for (int i = 0; i < length; i++) {
+            s.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return s.toString();
+    }
+
+    private void assertSameSignature(String baseString, String apiSecret, String tokenSecret) {
+        assertEquals(baseString,
+                scribe.getSignature(baseString, apiSecret, tokenSecret),
+                service.getSignature(baseString, apiSecret, tokenSecret));
+    }
+
+    public void testSignatureMethod() {
+        assertEquals(scribe.getSignatureMethod(), service.getSignatureMethod());
+    }
+
+    public void testRandomBaseStrings() {
+        for (int i = 0; i < 20000; i++) {
+            // lengths past the initial 512 byte buffer as well
+            String base = "GET&http%3A%2F%2Fexample.com%2Fox%2F4.0&"
+                    + randomString(BASE_CHARS, i % 100 == 0 ? 3000 : 300);
+            assertSameSignature(base, "secret", i % 2 == 0 ? "" : "token secret");
+        }
+    }
+
+    public void testNonAsciiBaseStrings() {
+        String[] bases = {
+            "GET&http%3A%2F%2Fexample.com&name=München",
+            "POST&x&日本語",
+            "emoji 😀 in base",
+            "unpaired \ud800 surrogate",
+            "latin1 ÿ then ascii",
+        };
+        for (String base : bases) {
+            assertSameSignature(base, "secret", "token");
+        }
+    }
+
+    public void testSecretsNeedingEncoding() {
+        assertSameSignature("base", "a&b c+d/é", "t~o*k%en");
+        assertSameSignature("base", "secret", "");
+    }
+
+    /**
+     * More key pairs than each thread caches, revisited in and out of order
+     */
+    public void testMacCacheEviction() {
+        String[] apiSecrets = new String[9];
+        String[] tokenSecrets = new String[9];
+        for (int k = 0; k < apiSecrets.length; k++) {
+            apiSecrets[k] = "api" + k;
+            tokenSecrets[k] = k % 3 == 0 ? "" : "token" + k;
+        }
+        for (int round = 0; round < 3; round++) {
+            for (int k = 0; k < apiSecrets.length; k++) {
+                assertSameSignature("base" + round + k, apiSecrets[k], tokenSecrets[k]);
+            }
+        }
+        for (int i = 0; i < 2000; i++) {
+            int k = random.nextInt(i % 2 == 0 ? 5 : apiSecrets.length);
+            assertSameSignature("base" + i, apiSecrets[k], tokenSecrets[k]);
+        }
+        // same api secret with different token secrets must not share a Mac
+        assertSameSignature("base", "api1", "x");
+        assertSameSignature("base", "api1", "y");
+    }
+
+    public void testConcurrentSigners() throws Exception {
+        Thread[] threads = new Thread[4];
+        final Throwable[] failure = new Throwable[1];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 2000; i++) {
+                        assertSameSignature("base" + i, "api" + (i + id) % 6, "t" + id);
+                    }
+                } catch (Throwable e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        synchronized (failure) {
+            if (failure[0] != null) {
+                throw new AssertionError(failure[0]);
+            }
+        }
+    }
+
+    public void testEmptyArgumentsAreRejected() {
+        try {
+            service.getSignature("", "secret", "token");
+            fail("signed an empty base string");
+        } catch (OAuthSignatureException expected) {
+        }
+        try {
+            service.getSignature("base", "", "token");
+            fail("signed with an empty api secret");
+        } catch (OAuthSignatureException expected) {
+        }
+    }
+}
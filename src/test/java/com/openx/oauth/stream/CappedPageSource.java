@@ -0,0 +1,90 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.stream;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Serves the integers 0 to total - 1 as v2 list pages, returning at most
+ * cap objects per page whatever limit is requested
+ */
+class CappedPageSource implements PageSource {
+
+    static final ObjectDecoder<Integer> INTS = new ObjectDecoder<Integer>() {
+
+        @Override
+        public Integer decode(JsonReader reader) throws IOException {
+            return reader.nextInt();
+        }
+    };
+
+    final List<Long> requested = new ArrayList<Long>();
+    private final int total;
+    private final int cap;
+    private final boolean echoLimit;
+    private final boolean sendHasMore;
+    private final boolean sendTotal;
+
+    CappedPageSource(int total, int cap, boolean echoLimit, boolean sendHasMore,
+            boolean sendTotal) {
+        this.total = total;
+        this.cap = cap;
+        this.echoLimit = echoLimit;
+        this.sendHasMore = sendHasMore;
+        this.sendTotal = sendTotal;
+    }
+
+    @Override
+    public synchronized CompletableFuture<String> fetch(long offset, int limit) {
+        requested.add(offset);
+        int served = Math.min(limit, cap);
+        long end = Math.min(total, offset + served);
+        StringBuilder body = new StringBuilder("{");
+        if (echoLimit) {
+            body.append("\"limit\":").append(served).append(',');
+        }
+        if (sendHasMore) {
+            body.append("\"has_more\":").append(end < total).append(',');
+        }
+        if (sendTotal) {
+            body.append("\"total_count\":").append(total).append(',');
+        }
+        body.append("\"offset\":").append(offset).append(",\"objects\":[");
+        for (long i = offset; i < end; i++) {
+            body.append(i > offset ? "," : "").append(i);
+        }
+        return CompletableFuture.completedFuture(body.append("]}").toString());
+    }
+
+    /**
+     * Asserts that the integers were seen exactly once each
+     */
+    void assertAllOnce(List<Integer> seen) {
+        boolean[] found = new boolean[total];
+        for (int value : seen) {
+            if (found[value]) {
+                throw new AssertionError("duplicate " + value);
+            }
+            found[value] = true;
+        }
+        for (int i = 0; i < total; i++) {
+            if (!found[i]) {
+                throw new AssertionError("missing " + i + " of " + total);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Paging of PagingCursor against servers that cap the page size
+ */
+public class PagingCursorTest extends TestCase {
+
+    private static List<Integer> drain(PageSource source, int pageSize, int prefetch) {
+        List<Integer> seen = new ArrayList<Integer>();
+        PagingCursor<Integer> cursor = new PagingCursor<Integer>(source,
+                CappedPageSource.INTS, pageSize, prefetch);
+        try {
+            while (cursor.hasNext()) {
+                seen.add(cursor.next());
+            }
+        } finally {
+            cursor.close();
+        }
+        return seen;
+    }
+
+    public void testUncappedPages() {
+        CappedPageSource source = new CappedPageSource(23, 100, true, true, true);
+        source.assertAllOnce(drain(source, 5, 2));
+    }
+
+    public void testCappedLimitWithHasMore() {
+        CappedPageSource source = new CappedPageSource(50, 3, false, true, false);
+        source.assertAllOnce(drain(source, 10, 3));
+    }
+
+    public void testCappedLimitEchoed() {
+        CappedPageSource source = new CappedPageSource(50, 3, true, false, true);
+        source.assertAllOnce(drain(source, 10, 3));
+    }
+
+    public void testCappedLimitWithoutPrefetch() {
+        CappedPageSource source = new CappedPageSource(31, 4, true, true, false);
+        source.assertAllOnce(drain(source, 10, 0));
+    }
+
+    public void testLaterPagesUseServerLimit() {
+        CappedPageSource source = new CappedPageSource(12, 3, true, true, false);
+        source.assertAllOnce(drain(source, 10, 0));
+        assertEquals("[0, 3, 6, 9]", source.requested.toString());
+    }
+}
@@ -0,0 +1,62 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.oauth.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Offsets of ParallelCrawler against servers that cap the page size
+ */
+public class ParallelCrawlerTest extends TestCase {
+
+    private static List<Integer> crawl(PageSource source, int pageSize, boolean ordered)
+            throws Exception {
+        final List<Integer> seen = new ArrayList<Integer>();
+        long delivered = new ParallelCrawler<Integer>(source, CappedPageSource.INTS,
+                pageSize, 4).crawl((offset, objects) -> seen.addAll(objects), ordered);
+        assertEquals(seen.size(), delivered);
+        return seen;
+    }
+
+    public void testUncappedUnordered() throws Exception {
+        CappedPageSource source = new CappedPageSource(95, 1000, true, true, true);
+        source.assertAllOnce(crawl(source, 10, false));
+    }
+
+    public void testCappedUnordered() throws Exception {
+        CappedPageSource source = new CappedPageSource(95, 7, true, true, true);
+        source.assertAllOnce(crawl(source, 10, false));
+    }
+
+    public void testCappedOrdered() throws Exception {
+        CappedPageSource source = new CappedPageSource(95, 7, false, true, true);
+        List<Integer> seen = crawl(source, 10, true);
+        source.assertAllOnce(seen);
+        for (int i = 0; i < seen.size(); i++) {
+            assertEquals(i, seen.get(i).intValue());
+        }
+    }
+
+    public void testCappedWithoutTotal() throws Exception {
+        CappedPageSource source = new CappedPageSource(40, 6, true, false, false);
+        source.assertAllOnce(crawl(source, 10, false));
+    }
+
+    public void testOffsetsStepByServerLimit() throws Exception {
+        CappedPageSource source = new CappedPageSource(20, 5, true, true, true);
+        crawl(source, 10, true);
+        assertEquals("[0, 5, 10, 15]", source.requested.toString());
+    }
+}
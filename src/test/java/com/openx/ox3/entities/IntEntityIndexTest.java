@@ -0,0 +1,207 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.ox3.entities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Probing, deletion and copy-on-write growth of IntEntityIndex
+ */
+public class IntEntityIndexTest extends TestCase {
+
+    // a fresh index has 8 slots and holds up to 4 entities before growing
+    private static final int CAPACITY = 8;
+
+    private IntEntityIndex<int[]> index;
+
+    @Override
+    protected void setUp() {
+        index = new IntEntityIndex<int[]>(entity -> entity[0]);
+    }
+
+    private static int[] entity(int key, int version) {
+        return new int[] {key, version};
+    }
+
+    /**
+     * Mirrors IntEntityIndex.hash
+     */
+    private static int home(int key, int capacity) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (capacity - 1);
+    }
+
+    /**
+     * @return count keys whose home is the given slot of a fresh index
+     */
+    private static int[] keysAt(int slot, int count, int from) {
+        int[] keys = new int[count];
+        for (int key = from, found = 0; found < count; key++) {
+            if (home(key, CAPACITY) == slot) {
+                keys[found++] = key;
+            }
+        }
+        return keys;
+    }
+
+    private void assertVersion(int key, int version) {
+        int[] entity = index.get(key);
+        assertNotNull("missing " + key, entity);
+        assertEquals(version, entity[1]);
+    }
+
+    public void testPutGetReplace() {
+        index.put(entity(1, 1));
+        index.put(entity(2, 1));
+        index.put(entity(1, 2));
+        assertEquals(2, index.size());
+        assertVersion(1, 2);
+        assertVersion(2, 1);
+        assertNull(index.get(3));
+        assertFalse(index.containsKey(3));
+    }
+
+    /**
+     * Three keys homed at the last slot fill it and wrap to slots 0 and 1,
+     * a fourth key homed at slot 0 is pushed to slot 2
+     */
+    public void testCollidingKeysAcrossWrap() {
+        int[] last = keysAt(CAPACITY - 1, 3, 1);
+        int first = keysAt(0, 1, 1)[0];
+        for (int key : last) {
+            index.put(entity(key, 1));
+        }
+        index.put(entity(first, 1));
+        assertEquals(4, index.size());
+
+        index.put(entity(last[2], 2));
+        assertEquals(4, index.size());
+        assertVersion(last[2], 2);
+
+        assertNotNull(index.remove(last[0]));
+        assertNull(index.get(last[0]));
+        assertVersion(last[1], 1);
+        assertVersion(last[2], 2);
+        assertVersion(first, 1);
+
+        assertNotNull(index.remove(last[2]));
+        assertVersion(last[1], 1);
+        assertVersion(first, 1);
+
+        index.put(entity(last[0], 3));
+        assertVersion(last[0], 3);
+        assertNotNull(index.remove(last[1]));
+        assertNotNull(index.remove(first));
+        assertVersion(last[0], 3);
+        assertEquals(1, index.size());
+    }
+
+    public void testRemoveAbsentKeys() {
+        int[] last = keysAt(CAPACITY - 1, 4, 1);
+        index.put(entity(last[0], 1));
+        index.put(entity(last[1], 1));
+        index.put(entity(last[2], 1));
+
+        assertNull(index.remove(last[3]));
+        assertEquals(0, index.removeAll(new int[] {last[3], -5}));
+        // absent and repeated keys after the first removal hit the copy
+        assertEquals(2, index.removeAll(new int[] {last[1], last[3], last[1], last[0]}));
+        assertEquals(1, index.size());
+        assertVersion(last[2], 1);
+        assertEquals(0, index.removeAll(new int[0]));
+    }
+
+    public void testPutAllGrowsTable() {
+        List<int[]> entities = new ArrayList<int[]>();
+        for (int key = 0; key < 10000; key++) {
+            entities.add(entity(key * 31, key));
+        }
+        index.put(entity(-1, 0));
+        index.putAll(entities.iterator());
+        assertEquals(10001, index.size());
+        for (int key = 0; key < 10000; key++) {
+            assertVersion(key * 31, key);
+        }
+        assertVersion(-1, 0);
+        assertEquals(10001, index.values().size());
+    }
+
+    public void testRemoveAllEntities() {
+        List<int[]> entities = new ArrayList<int[]>();
+        for (int key = 0; key < 100; key++) {
+            entities.add(entity(key, 1));
+        }
+        index.putAll(entities);
+        assertEquals(50, index.removeAll(entities.subList(0, 50)));
+        assertEquals(50, index.size());
+        assertNull(index.get(0));
+        assertVersion(99, 1);
+    }
+
+    public void testPublishedTableIsNotModified() {
+        index.put(entity(1, 1));
+        List<int[]> before = index.values();
+        index.put(entity(2, 1));
+        index.remove(1);
+        assertEquals(1, before.size());
+        assertEquals(1, before.get(0)[0]);
+    }
+
+    public void testRandomOperationsMatchHashMap() {
+        Random random = new Random(42);
+        Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        for (int step = 0; step < 20000; step++) {
+            int key = random.nextInt(64) - 32;
+            switch (random.nextInt(4)) {
+            case 0:
+            case 1:
+                index.put(entity(key, step));
+                expected.put(key, step);
+                break;
+            case 2:
+                int[] removed = index.remove(key);
+                Integer version = expected.remove(key);
+                assertEquals(version == null, removed == null);
+                break;
+            default:
+                int[] keys = {key, key + 1, random.nextInt(64) - 32};
+                int count = 0;
+                for (int k : new int[] {keys[0], keys[1]}) {
+                    if (expected.remove(k) != null) {
+                        count++;
+                    }
+                }
+                if (keys[2] != keys[0] && keys[2] != keys[1]
+                        && expected.remove(keys[2]) != null) {
+                    count++;
+                }
+                assertEquals(Arrays.toString(keys), count, index.removeAll(keys));
+            }
+            assertEquals(expected.size(), index.size());
+        }
+        for (int key = -32; key <= 32; key++) {
+            Integer version = expected.get(key);
+            if (version == null) {
+                assertNull(index.get(key));
+            } else {
+                assertVersion(key, version);
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*======================================================================*
+ * Copyright (c) 2011, OpenX Technologies, Inc. All rights reserved.    *
+ *                                                                      *
+ * Licensed under the New BSD License (the "License"); you may not use  *
+ * this file except in compliance with the License. Unless required     *
+ * by applicable law or agreed to in writing, software distributed      *
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT        *
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.     *
+ * See the License for the specific language governing permissions and  *
+ * limitations under the License. See accompanying LICENSE file.        *
+ *======================================================================*/
+package com.openx.ox3.entities;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.google.gson.Gson;
+
+/**
+ * Round trips and damaged files of OX3AccountSnapshot
+ */
+public class OX3AccountSnapshotTest extends TestCase {
+
+    private static final Gson GSON = new Gson();
+
+    private File dir;
+    private File file;
+
+    @Override
+    protected void setUp() throws IOException {
+        dir = Files.createTempDirectory("snapshot-test").toFile();
+        file = new File(dir, "accounts.snap");
+    }
+
+    @Override
+    protected void tearDown() {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    private static OX3Account account(int id, String name, String notes) {
+        return new OX3Account.Builder().id(id).name(name).notes(notes)
+                .status(id % 2 == 0 ? "Active" : "Inactive")
+                .account_id(id * 10).account_type_id(3).master(-1).currency_id(1)
+                .timezone_id(22).country_of_business_id(id % 3 == 0 ? null : "DE")
+                .single_ad_limitation(0).primary_contact_id(id + 1)
+                .billing_contact_id(Integer.MAX_VALUE).external_id(null)
+                .instance_id(Integer.MIN_VALUE).modified_date("2012-03-04 05:06:07")
+                .created_date(null).deleted(0).market_active(1).market_currency_id(978)
+                .build();
+    }
+
+    private static void assertSameAccounts(List<OX3Account> expected,
+            List<OX3Account> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(GSON.toJson(expected.get(i)), GSON.toJson(actual.get(i)));
+        }
+    }
+
+    public void testRoundTrip() throws IOException {
+        List<OX3Account> accounts = new ArrayList<OX3Account>();
+        for (int i = 0; i < 1000; i++) {
+            accounts.add(account(i, "Publisher " + i, i % 5 == 0 ? null : "note " + i));
+        }
+        OX3AccountSnapshot.write(file, accounts, "2012-03-04 05:06:07");
+
+        OX3AccountSnapshot snapshot = OX3AccountSnapshot.read(file);
+        assertEquals("2012-03-04 05:06:07", snapshot.getWatermark());
+        assertSameAccounts(accounts, snapshot.getAccounts());
+    }
+
+    public void testNullStringsAndWatermark() throws IOException {
+        List<OX3Account> accounts = Arrays.asList(account(1, null, null),
+                new OX3Account.Builder().build());
+        OX3AccountSnapshot.write(file, accounts, null);
+
+        OX3AccountSnapshot snapshot = OX3AccountSnapshot.read(file);
+        assertNull(snapshot.getWatermark());
+        assertSameAccounts(accounts, snapshot.getAccounts());
+        assertNull(snapshot.getAccounts().get(0).getName());
+        assertNull(snapshot.getAccounts().get(1).getStatus());
+    }
+
+    public void testNonAsciiStrings() throws IOException {
+        List<OX3Account> accounts = Arrays.asList(
+                account(1, "Zeitungsverlag München", "日本語"),
+                account(2, "emoji 😀 name", ""),
+                account(3, "Zeitungsverlag München", "éè"));
+        OX3AccountSnapshot.write(file, accounts, "wäter");
+
+        OX3AccountSnapshot snapshot = OX3AccountSnapshot.read(file);
+        assertEquals("wäter", snapshot.getWatermark());
+        assertSameAccounts(accounts, snapshot.getAccounts());
+    }
+
+    public void testEmptySnapshot() throws IOException {
+        OX3AccountSnapshot.write(file, Collections.<OX3Account>emptyList(), "w");
+        OX3AccountSnapshot snapshot = OX3AccountSnapshot.read(file);
+        assertEquals("w", snapshot.getWatermark());
+        assertTrue(snapshot.getAccounts().isEmpty());
+    }
+
+    public void testTruncatedFileIsRejected() throws IOException {
+        OX3AccountSnapshot.write(file, Arrays.asList(account(1, "a", "b"),
+                account(2, "c", "d")), "w");
+        long length = file.length();
+        for (long cut : new long[] {length - 1, length - 4, length / 2, 23, 0}) {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(cut);
+            } finally {
+                raf.close();
+            }
+            try {
+                OX3AccountSnapshot.read(file);
+                fail("read a snapshot cut to " + cut + " bytes");
+            } catch (IOException expected) {
+            }
+        }
+    }
+
+    public void testFlippedBitIsRejected() throws IOException {
+        OX3AccountSnapshot.write(file, Arrays.asList(account(1, "a", "b"),
+                account(2, "c", "d")), "w");
+        byte[] original = Files.readAllBytes(file.toPath());
+        for (int at = 0; at < original.length; at += 7) {
+            byte[] damaged = original.clone();
+            damaged[at] ^= 0x10;
+            Files.write(file.toPath(), damaged);
+            try {
+                OX3AccountSnapshot.read(file);
+                fail("read a snapshot with byte " + at + " flipped");
+            } catch (IOException expected) {
+            }
+        }
+    }
+
+    public void testMissingFileIsRejected() {
+        try {
+            OX3AccountSnapshot.read(file);
+            fail("read a missing snapshot");
+        } catch (IOException expected) {
+        }
+    }
+
+    public void testFailedWriteKeepsPreviousSnapshot() throws IOException {
+        List<OX3Account> previous = Arrays.asList(account(1, "kept", null));
+        OX3AccountSnapshot.write(file, previous, "before");
+
+        Iterable<OX3Account> failing = () -> new Iterator<OX3Account>() {
+
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public OX3Account next() {
+                if (next == 3) {
+                    throw new IllegalStateException("source failed");
+                }
+                return account(next++, "new", null);
+            }
+        };
+        try {
+            OX3AccountSnapshot.write(file, failing, "after");
+            fail("write did not fail");
+        } catch (IllegalStateException expected) {
+        }
+
+        OX3AccountSnapshot snapshot = OX3AccountSnapshot.read(file);
+        assertEquals("before", snapshot.getWatermark());
+        assertSameAccounts(previous, snapshot.getAccounts());
+        assertEquals(1, dir.listFiles().length);
+    }
+}